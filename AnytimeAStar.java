@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Anytime Weighted A* (in the style of ARA*) with the Manhattan heuristic.
+ *  A first solution is found quickly with a large heuristic weight; the weight
+ *  is then lowered step by step and the solution improved until either it is
+ *  proven optimal or the time budget runs out.  Each improvement continues
+ *  from the states already generated instead of starting the search over.
+ */
+public class AnytimeAStar {
+
+    private Puzzle currentState;
+    private ArrayList<Puzzle> solutionList = new ArrayList<>();
+    private Utility statisticsGatherer;
+    private boolean saveToDisk = true;
+
+    private double initialWeight;
+    private double weightDecrement;
+    private long timeBudgetMillis;
+
+    private double suboptimalityBound = Double.POSITIVE_INFINITY;  //proven ratio of solution length to the shortest length.
+    private int iterations = 0;
+
+    /**
+     * Takes an initial gamestate and finds solution to goal by Anytime Weighted
+     * A* search.
+     * @param initState initial board state; Puzzle objects keep their own reference to goal state
+     * @param initialWeight heuristic weight of the first, fastest iteration (at least 1.0).
+     * @param weightDecrement how much the weight is lowered after every solution found.
+     * @param timeBudgetMillis time after which the best solution found so far is returned.
+     *                         the search always runs until a first solution is found.
+     * @param saveToDisk convenience flag to turn on/off saving search results to disk.
+     */
+    public AnytimeAStar(Puzzle initState, double initialWeight, double weightDecrement,
+                        long timeBudgetMillis, boolean saveToDisk)
+    {
+        if (initialWeight < 1.0 || weightDecrement <= 0)
+        {
+            throw new IllegalArgumentException("Weight must be at least 1.0 and decrease by a positive step.");
+        }
+        currentState = initState;
+        this.initialWeight = initialWeight;
+        this.weightDecrement = weightDecrement;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.saveToDisk = saveToDisk;
+        statisticsGatherer = new Utility(6);
+    }
+
+    /**
+    Runs the given search method and returns the best solution path found
+    within the time budget in an ArrayList, in order of first move to last move.
+    Returns null if the thread running the search is interrupted.
+    */
+    public ArrayList<Puzzle> Search()
+    {
+        long deadline = System.nanoTime() + timeBudgetMillis * 1000000L;
+
+        HashMap<Long, Puzzle> bestNode = new HashMap<>();   //cheapest copy of every board generated so far.
+        HashSet<Long> closedStates = new HashSet<>();       //boards expanded during the current iteration.
+        ArrayList<Puzzle> openList = new ArrayList<>();
+        ArrayList<Puzzle> inconsistentList = new ArrayList<>(); //closed boards reached more cheaply; reopened next iteration.
+
+        Puzzle incumbent = null;
+        double weight = initialWeight;
+
+        bestNode.put(currentState.getStateKey(), currentState);
+        if (Utility.isGoalState(currentState))
+        {
+            incumbent = currentState;
+        } else
+        {
+            openList.add(currentState);
+        }
+
+        while (true)
+        {
+            incumbent = improvePath(weight, incumbent, deadline, bestNode, closedStates, openList, inconsistentList);
+            iterations++;
+            if (incumbent == null)
+            {
+                return null; //frontier exhausted without reaching the goal.
+            }
+            suboptimalityBound = computeBound(weight, incumbent, bestNode, openList, inconsistentList);
+
+            if (suboptimalityBound <= 1.0 || weight <= 1.0 || System.nanoTime() >= deadline)
+            {
+                break;
+            }
+
+            //lower the weight and reuse everything generated so far for the next iteration.
+            weight = Math.max(1.0, weight - weightDecrement);
+            openList.addAll(inconsistentList);
+            inconsistentList.clear();
+            closedStates.clear();
+        }
+
+        solutionList = Utility.buildSolutionPath(incumbent);
+        statisticsGatherer.reportSolution(solutionList, saveToDisk);
+        if (saveToDisk)
+        {
+            System.out.println(String.format("Suboptimality bound: %.3f after %d iteration(s)\n",
+                    suboptimalityBound, iterations));
+        }
+        return solutionList;
+    }
+
+    /**
+     * one iteration of ARA*: expands states in order of g(n) + weight * h(n)
+     * until no state on the frontier can lead to a shorter solution than the
+     * current one, or the deadline has passed and a solution exists.
+     * @return the cheapest goal state found so far, or null if there is none.
+     */
+    private Puzzle improvePath(double weight, Puzzle incumbent, long deadline, HashMap<Long, Puzzle> bestNode,
+                               HashSet<Long> closedStates, ArrayList<Puzzle> openList,
+                               ArrayList<Puzzle> inconsistentList)
+    {
+        while (!openList.isEmpty())
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                return null; //search was cancelled.
+            }
+
+            Puzzle gameState = Utility.getLowestWeightedManhattan(openList, weight);
+            if (incumbent != null)
+            {
+                double lowestCost = gameState.getDepth() + weight * gameState.getPathCostManhattan();
+                if (incumbent.getDepth() <= lowestCost || System.nanoTime() >= deadline)
+                {
+                    return incumbent;
+                }
+            }
+            openList.remove(gameState);
+
+            long stateKey = gameState.getStateKey();
+            if (bestNode.get(stateKey) != gameState)
+            {
+                continue; //a cheaper copy of this board was generated later on.
+            }
+            closedStates.add(stateKey);
+
+            for (int move : gameState.getBlankSquare().getMoves())
+            {
+                Puzzle tempChild = Utility.createChild(gameState, move);
+                statisticsGatherer.addToNodesExpanded();
+
+                long childKey = tempChild.getStateKey();
+                Puzzle known = bestNode.get(childKey);
+                if (known != null && known.getDepth() <= tempChild.getDepth())
+                {
+                    continue;
+                }
+                bestNode.put(childKey, tempChild);
+
+                if (Utility.isGoalState(tempChild))
+                {
+                    incumbent = tempChild;
+                } else if (closedStates.contains(childKey))
+                {
+                    inconsistentList.add(tempChild);
+                } else
+                {
+                    openList.add(tempChild);
+                    statisticsGatherer.updateFrontierListLength(openList);
+                }
+                statisticsGatherer.setTreeDepth(tempChild.getDepth());
+            }
+            statisticsGatherer.updateClosedListLength(closedStates.size());
+        }
+        return incumbent;
+    }
+
+    /**
+     * the current solution is at most this many times longer than the
+     * shortest one: the smaller of the weight and the solution length divided
+     * by the lowest unweighted f(n) of any state that may still be expanded.
+     */
+    private static double computeBound(double weight, Puzzle incumbent, HashMap<Long, Puzzle> bestNode,
+                                       ArrayList<Puzzle> openList, ArrayList<Puzzle> inconsistentList)
+    {
+        ArrayList<Puzzle> candidates = new ArrayList<>(openList);
+        candidates.addAll(inconsistentList);
+
+        int lowestCost = Integer.MAX_VALUE;
+        for (Puzzle state : candidates)
+        {
+            if (bestNode.get(state.getStateKey()) == state)
+            {
+                lowestCost = Math.min(lowestCost, state.getDepth() + state.getPathCostManhattan());
+            }
+        }
+        if (lowestCost == Integer.MAX_VALUE || lowestCost >= incumbent.getDepth())
+        {
+            return 1.0;
+        }
+        return Math.min(weight, (double) incumbent.getDepth() / lowestCost);
+    }
+
+    public double getSuboptimalityBound()
+    {
+        return suboptimalityBound;
+    }
+
+    public int getIterations()
+    {
+        return iterations;
+    }
+
+    /**
+     * @return the performance stats of the last {@code Search()}; the ASCII
+     * report is only drawn when saving to disk.
+     */
+    public Utility getStatistics()
+    {
+        return statisticsGatherer;
+    }
+}
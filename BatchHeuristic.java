@@ -0,0 +1,217 @@
+import java.util.Arrays;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  The Misplaced Tile and Manhattan heuristics for whole arrays of
+ *  {@code PackedBoard}s at once, for searches that expand a batch of states
+ *  per step such as {@code BeamSearch}; the packed searches that expand one
+ *  board at a time use {@code estimate} and {@code childEstimate} on their own.
+ *
+ *  Nothing in here branches on the board.  Manhattan distance is one table
+ *  lookup per square, by tile and square, with the blank's entries all 0.
+ *  Misplaced Tile works on all 16 squares of a long together (SWAR): the
+ *  board xor the goal is non-zero in the squares that differ, each
+ *  square's four bits are folded into its lowest one, the blank's square is
+ *  masked out the same way, and a bit count gives the answer.
+ *
+ *  {@code expand} makes the children of a batch and their heuristic without
+ *  looking at their squares at all: sliding one tile changes the heuristic
+ *  by an amount that only depends on the tile and the two squares, read
+ *  from a table made once.
+ */
+public class BatchHeuristic {
+
+    public static final int MISPLACED = 3;  //same numbers as the Utility search types.
+    public static final int MANHATTAN = 4;
+
+    private static final long LOW_BITS = 0x1111111111111111L;  //lowest bit of every square.
+
+    private int width;
+    private int height;
+    private int size;
+    private int heuristic;
+    private long goalState;
+    private byte[] squareCost;          //by tile * 16 + square.
+    private byte[] operatorDelta;       //change in h when a tile slides, by (tile * size + from) * size + to.
+    private int[][] targets;            //squares the blank can slide to, by the blank's square; made on first expand if null.
+
+    /**
+     * @param width number of squares per row.
+     * @param height number of rows; width * height may be at most 16.
+     * @param goal the goal board by position index, 0 for the blank.
+     * @param heuristic MISPLACED or MANHATTAN.
+     */
+    public BatchHeuristic(int width, int height, int[] goal, int heuristic)
+    {
+        this(width, height, goal, heuristic, null);
+    }
+
+    /**
+     * @param targets the squares the blank can slide to from each square, in
+     * the order {@code expand} should make the children; null for the order
+     * of {@code PackedBoard.neighbours}.
+     */
+    public BatchHeuristic(int width, int height, int[] goal, int heuristic, int[][] targets)
+    {
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.heuristic = heuristic;
+        this.targets = targets;
+        goalState = PackedBoard.pack(goal);
+        int[] goalPosition = new int[PackedBoard.MAX_SQUARES];
+        for (int i = 0; i < goal.length; i++)
+        {
+            goalPosition[goal[i]] = i;
+        }
+        squareCost = new byte[size * PackedBoard.MAX_SQUARES];
+        for (int tile = 1; tile < size; tile++)
+        {
+            for (int square = 0; square < size; square++)
+            {
+                int target = goalPosition[tile];
+                squareCost[tile * PackedBoard.MAX_SQUARES + square] = (byte) ((heuristic == MISPLACED)
+                        ? ((target == square) ? 0 : 1)
+                        : Math.abs(target / width - square / width) + Math.abs(target % width - square % width));
+            }
+        }
+        operatorDelta = new byte[size * size * size];
+        for (int tile = 1; tile < size; tile++)
+        {
+            for (int from = 0; from < size; from++)
+            {
+                for (int to = 0; to < size; to++)
+                {
+                    operatorDelta[(tile * size + from) * size + to] = (byte) (squareCost[tile * PackedBoard.MAX_SQUARES + to]
+                            - squareCost[tile * PackedBoard.MAX_SQUARES + from]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the heuristic of one board.
+     */
+    public int estimate(long state)
+    {
+        return (heuristic == MISPLACED) ? misplaced(state) : manhattan(state);
+    }
+
+    /**
+     * the heuristic of the first {@code count} boards of {@code states}, into {@code estimates}.
+     */
+    public void estimate(long[] states, int count, int[] estimates)
+    {
+        if (heuristic == MISPLACED)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                estimates[i] = misplaced(states[i]);
+            }
+        } else
+        {
+            for (int i = 0; i < count; i++)
+            {
+                estimates[i] = manhattan(states[i]);
+            }
+        }
+    }
+
+    private int manhattan(long state)
+    {
+        int total = 0;
+        for (int square = 0; square < size; square++)
+        {
+            total += squareCost[(((int) (state >>> (4 * square))) & 15) * PackedBoard.MAX_SQUARES + square];
+        }
+        return total;
+    }
+
+    private int misplaced(long state)
+    {
+        return Long.bitCount(nonZeroSquares(state ^ goalState) & nonZeroSquares(state));
+    }
+
+    /**
+     * @return the lowest bit of every square whose four bits are not all zero.
+     */
+    private static long nonZeroSquares(long state)
+    {
+        return (state | (state >>> 1) | (state >>> 2) | (state >>> 3)) & LOW_BITS;
+    }
+
+    /**
+     * makes every child of the first {@code count} boards of {@code parents},
+     * in order of parent and then of the blank's targets.
+     * @param estimates the heuristic of each parent.
+     * @param children receives the child boards; room for 4 per parent.
+     * @param childEstimates receives each child's heuristic.
+     * @param parentOf receives the index in {@code parents} of each child's parent.
+     * @return the number of children made.
+     */
+    public int expand(long[] parents, int[] estimates, int count, long[] children, int[] childEstimates, int[] parentOf)
+    {
+        return expand(parents, estimates, 0, count, children, childEstimates, parentOf, 0);
+    }
+
+    /**
+     * makes the children of boards {@code from} to {@code to - 1} of
+     * {@code parents} only, written from {@code firstChild} on, so that
+     * slices of one batch can be expanded on several threads into the same
+     * arrays.  {@code parentOf} still holds indexes into the whole of {@code parents}.
+     * @return the number of children made.
+     */
+    public int expand(long[] parents, int[] estimates, int from, int to,
+                      long[] children, int[] childEstimates, int[] parentOf, int firstChild)
+    {
+        int[][] targets = targetsOf();
+        int made = firstChild;
+        for (int i = from; i < to; i++)
+        {
+            long state = parents[i];
+            int blank = PackedBoard.blankPosition(state, size);
+            for (int target : targets[blank])
+            {
+                int tile = PackedBoard.get(state, target);
+                children[made] = PackedBoard.slide(state, blank, target);
+                childEstimates[made] = estimates[i] + operatorDelta[(tile * size + target) * size + blank];
+                parentOf[made] = i;
+                made++;
+            }
+        }
+        return made - firstChild;
+    }
+
+    /**
+     * the default targets are only made when needed, so that the searches
+     * that make one board's children at a time do not pay for them.  two
+     * threads making them at once make the same table.
+     */
+    private int[][] targetsOf()
+    {
+        if (targets == null)
+        {
+            int[][] made = new int[size][];
+            int[] found = new int[4];
+            for (int blank = 0; blank < size; blank++)
+            {
+                made[blank] = Arrays.copyOf(found, PackedBoard.neighbours(blank, width, height, found));
+            }
+            targets = made;
+        }
+        return targets;
+    }
+
+    /**
+     * the heuristic of the board {@code state} becomes when the tile on
+     * {@code target} slides onto the blank's square {@code blank}.
+     * @param estimate the heuristic of {@code state}.
+     */
+    public int childEstimate(long state, int estimate, int blank, int target)
+    {
+        int tile = PackedBoard.get(state, target);
+        return estimate + operatorDelta[(tile * size + target) * size + blank];
+    }
+}
@@ -0,0 +1,321 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.stream.IntStream;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Beam Search.  Works through the search tree one depth at a time like
+ *  Breadth Search, but of all the children of a layer only the
+ *  {@code beamWidth} best by the heuristic are kept for the next layer; the
+ *  rest are thrown away for good.  Memory is the kept layers, at most
+ *  beamWidth * depth game states, and each layer costs about the same to
+ *  expand, so the running time follows the beam width.  The solution is not
+ *  necessarily the shortest, and the search can miss a solution altogether
+ *  when the beam is too narrow.
+ *
+ *  Boards are {@code PackedBoard} longs, so any board of up to 16 squares
+ *  works (the 15-puzzle is the largest); {@code Search} adapts it to the
+ *  {@code Puzzle} based searches on a 3x3 board, making the children in the
+ *  same order {@code Utility.createChild} would.  The children of a layer
+ *  are generated with their heuristic worked out from their parent's by
+ *  {@code BatchHeuristic}, in parallel on all cores, a slice of the layer
+ *  each.  The states kept so far are remembered exactly, or in a Bloom
+ *  filter when {@code useDuplicateFilter} is called; the filter is only
+ *  asked on the calling thread, in the order the children were made, as it
+ *  counts the lookups for its estimate of the states wrongly pruned.
+ */
+public class BeamSearch {
+
+    private static final int SLICES = Runtime.getRuntime().availableProcessors();
+    private static final int MIN_SLICE_PARENTS = 256;     //smaller slices cost more to hand out than to expand.
+
+    private int width;
+    private int size;
+    private long goalState;
+    private BatchHeuristic batch;
+    private int largestEstimate;
+    private Puzzle currentState = null;     //only for Search().
+    private ArrayList<Puzzle> solutionList = new ArrayList<>();
+    private Utility statisticsGatherer;
+    private boolean saveToDisk = true;
+    private int beamWidth;
+
+    /**
+     * Takes an initial gamestate and finds solution to goal by Beam Search.
+     * @param initState initial board state; Puzzle objects keep their own reference to goal state
+     * @param beamWidth the number of game states kept at each depth.
+     * @param heuristic 3 for the Misplaced Tile heuristic, 4 for Manhattan (as in the Utility search types).
+     * @param saveToDisk convenience flag to turn on/off saving search results to disk.
+     */
+    public BeamSearch(Puzzle initState, int beamWidth, int heuristic, boolean saveToDisk)
+    {
+        this(3, 3, initState.getGoalNumbers(), beamWidth, heuristic, puzzleTargets(initState));
+        currentState = initState;
+        this.saveToDisk = saveToDisk;
+    }
+
+    /**
+     * @param width number of squares per row.
+     * @param height number of rows; width * height may be at most 16.
+     * @param goal the goal board by position index, 0 for the blank.
+     * @param beamWidth the number of game states kept at each depth.
+     * @param heuristic 3 for the Misplaced Tile heuristic, 4 for Manhattan (as in the Utility search types).
+     */
+    public BeamSearch(int width, int height, int[] goal, int beamWidth, int heuristic)
+    {
+        this(width, height, goal, beamWidth, heuristic, null);
+    }
+
+    private BeamSearch(int width, int height, int[] goal, int beamWidth, int heuristic, int[][] targets)
+    {
+        if (beamWidth < 1)
+        {
+            throw new IllegalArgumentException("Beam width must be at least 1, was " + beamWidth);
+        }
+        if (width * height > PackedBoard.MAX_SQUARES)
+        {
+            throw new IllegalArgumentException("Board must have at most " + PackedBoard.MAX_SQUARES + " squares");
+        }
+        this.width = width;
+        this.size = width * height;
+        this.beamWidth = beamWidth;
+        goalState = PackedBoard.pack(goal);
+        batch = new BatchHeuristic(width, height, goal, heuristic, targets);
+        largestEstimate = size * (width + height - 2);
+        statisticsGatherer = new Utility((heuristic == 3) ? 10 : 11);
+    }
+
+    /**
+     * @return the squares the blank can slide to from each square, in the
+     * order of {@code PuzzleSquare.getMoves()}.
+     */
+    private static int[][] puzzleTargets(Puzzle initState)
+    {
+        int[][] targets = new int[initState.getInternalState().length][];
+        for (PuzzleSquare square : initState.getInternalState())
+        {
+            int position = square.getSquarePosition();
+            targets[position] = Arrays.stream(square.getMoves()).map(move -> position + move).toArray();
+        }
+        return targets;
+    }
+
+    /**
+     * remembers the states kept so far in a Bloom filter instead of a
+     * {@code HashSet}; see {@code Utility.setDuplicateFilter}.
+     * @param memoryBytes size of the filter.
+     * @param falsePositiveRate the rate wanted when the filter is full.
+     */
+    public void useDuplicateFilter(long memoryBytes, double falsePositiveRate)
+    {
+        statisticsGatherer.setDuplicateFilter(new BloomFilter(memoryBytes, falsePositiveRate));
+    }
+
+    /**
+     * lets the statistics rate the solution against a known shortest one.
+     * @param length number of game states on a shortest solution path.
+     */
+    public void setKnownOptimalLength(int length)
+    {
+        statisticsGatherer.setKnownOptimalLength(length);
+    }
+
+    /**
+    Runs the given search method and returns the solution path in
+    an ArrayList, in order of first move to last move.  Returns null if the
+    beam lost every path to the goal, or the thread was interrupted.
+    */
+    public ArrayList<Puzzle> Search()
+    {
+        if (currentState == null)
+        {
+            throw new IllegalStateException("Search() needs a Puzzle; use search(int[]) for other boards");
+        }
+        MoveSequence moves = search(currentState.getCurrentNumbers());
+        if (moves == null)
+        {
+            return null;
+        }
+        solutionList = moves.replay(currentState);
+        statisticsGatherer.reportSolution(solutionList, saveToDisk);
+        return solutionList;
+    }
+
+    /**
+     * @param start the start board by position index, 0 for the blank.
+     * @return the moves found, or null if the beam lost every path to the goal or the thread was interrupted.
+     */
+    public MoveSequence search(int[] start)
+    {
+        long startState = PackedBoard.pack(start);
+        if (startState == goalState)
+        {
+            return new MoveSequence();
+        }
+
+        //every game state kept so far; a state is never kept twice.
+        BloomFilter filter = statisticsGatherer.getDuplicateFilter();
+        HashSet<Long> kept = (filter == null) ? new HashSet<>() : null;
+        if (filter == null)
+        {
+            kept.add(startState);
+        } else
+        {
+            filter.put(startState);
+        }
+
+        //every state kept, layer after layer, with the index of its parent among them to read the path back.
+        long[] keptStates = new long[16];
+        int[] keptParents = new int[keptStates.length];
+        keptStates[0] = startState;
+        keptParents[0] = -1;
+        int keptCount = 1;
+        int depth = 0;
+        long[] states = {startState};
+        int[] estimates = {batch.estimate(startState)};
+
+        while (states.length > 0)
+        {
+            int layerStart = keptCount - states.length;
+            if (Thread.currentThread().isInterrupted())
+            {
+                return null;
+            }
+
+            //children by parent, then in the order of the blank's targets.  the layer is cut into slices expanded
+            //in parallel, each into its own part of the arrays, then closed up in slice order, so the result does
+            //not depend on the thread timing.
+            int layerSize = states.length;
+            long[] children = new long[layerSize * 4];
+            int[] childEstimates = new int[children.length];
+            int[] parentOf = new int[children.length];
+            boolean[] keptBefore = new boolean[children.length];
+            int slices = Math.max(1, Math.min(SLICES, layerSize / MIN_SLICE_PARENTS));
+            int[] madeBySlice = new int[slices];
+            long[] parentStates = states;
+            int[] parentEstimates = estimates;
+            IntStream.range(0, slices).parallel().forEach(slice -> {
+                int from = (int) ((long) layerSize * slice / slices);
+                int to = (int) ((long) layerSize * (slice + 1) / slices);
+                int made = batch.expand(parentStates, parentEstimates, from, to, children, childEstimates, parentOf, 4 * from);
+                //the Bloom filter keeps a running estimate as it is asked, so it is asked in order, below.
+                for (int i = 4 * from; filter == null && i < 4 * from + made; i++)
+                {
+                    keptBefore[i] = kept.contains(children[i]);
+                }
+                madeBySlice[slice] = made;
+            });
+            int made = 0;
+            for (int slice = 0; slice < slices; slice++)
+            {
+                int from = 4 * (int) ((long) layerSize * slice / slices);
+                if (from != made)
+                {
+                    System.arraycopy(children, from, children, made, madeBySlice[slice]);
+                    System.arraycopy(childEstimates, from, childEstimates, made, madeBySlice[slice]);
+                    System.arraycopy(parentOf, from, parentOf, made, madeBySlice[slice]);
+                    System.arraycopy(keptBefore, from, keptBefore, made, madeBySlice[slice]);
+                }
+                made += madeBySlice[slice];
+            }
+            statisticsGatherer.addToNodesExpanded(made);
+
+            int[] candidates = new int[made];
+            int candidateCount = 0;
+            HashSet<Long> candidateKeys = new HashSet<>();
+            for (int i = 0; i < made; i++)
+            {
+                long key = children[i];
+                if (key == goalState)
+                {
+                    long[] path = Arrays.copyOf(keptStates, keptCount + 1);
+                    int[] pathParents = Arrays.copyOf(keptParents, keptCount + 1);
+                    path[keptCount] = key;
+                    pathParents[keptCount] = layerStart + parentOf[i];
+                    return PackedBoard.movesAlong(keptCount, node -> pathParents[node], node -> path[node], width, size);
+                }
+                if (!candidateKeys.add(key) || ((filter == null) ? keptBefore[i] : filter.mightContain(key)))
+                {
+                    statisticsGatherer.addToDuplicatesPruned();
+                    continue;
+                }
+                candidates[candidateCount++] = i;
+            }
+            statisticsGatherer.updateFrontierListLength(candidateCount);
+
+            //a counting sort on the heuristic is stable, so ties keep the order they were generated in.
+            int keep = Math.min(beamWidth, candidateCount);
+            int[] best = bestByEstimate(candidates, candidateCount, childEstimates, largestEstimate, keep);
+            long[] nextStates = new long[keep];
+            int[] nextEstimates = new int[keep];
+            if (keptCount + keep > keptStates.length)
+            {
+                int capacity = Math.max(keptStates.length * 2, keptCount + keep);
+                keptStates = Arrays.copyOf(keptStates, capacity);
+                keptParents = Arrays.copyOf(keptParents, capacity);
+            }
+            for (int k = 0; k < keep; k++)
+            {
+                nextStates[k] = children[best[k]];
+                nextEstimates[k] = childEstimates[best[k]];
+                keptStates[keptCount + k] = nextStates[k];
+                keptParents[keptCount + k] = layerStart + parentOf[best[k]];
+                if (filter == null)
+                {
+                    kept.add(nextStates[k]);
+                } else
+                {
+                    filter.put(nextStates[k]);
+                }
+            }
+            states = nextStates;
+            estimates = nextEstimates;
+            keptCount += keep;
+            depth++;
+            statisticsGatherer.updateClosedListLength(keptCount);
+            if (keep > 0)
+            {
+                statisticsGatherer.setTreeDepth(depth);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * picks the {@code keep} candidates with the smallest heuristic by
+     * counting sort, ties in the order the candidates are listed.
+     * @param candidates indexes into {@code estimates}.
+     * @param largestEstimate no estimate is larger.
+     * @return the indexes picked, best first.
+     */
+    private static int[] bestByEstimate(int[] candidates, int count, int[] estimates, int largestEstimate, int keep)
+    {
+        int[] start = new int[largestEstimate + 2];
+        for (int i = 0; i < count; i++)
+        {
+            start[estimates[candidates[i]] + 1]++;
+        }
+        for (int h = 1; h < start.length; h++)
+        {
+            start[h] += start[h - 1];
+        }
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            sorted[start[estimates[candidates[i]]]++] = candidates[i];
+        }
+        return (keep == count) ? sorted : Arrays.copyOf(sorted, keep);
+    }
+
+    /**
+     * @return the performance stats of the last search; the ASCII report is
+     * only drawn when {@code Search()} saves to disk.
+     */
+    public Utility getStatistics()
+    {
+        return statisticsGatherer;
+    }
+}
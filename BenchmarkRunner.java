@@ -0,0 +1,457 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Performance regression check.  Runs every search method over a fixed 3x3
+ *  corpus from {@code InstanceGenerator} and records, for each board, the
+ *  wall time, nodes expanded, largest frontier, largest closed list and
+ *  bytes allocated, then compares the run with a baseline file kept with
+ *  the code.
+ *
+ *      java BenchmarkRunner [corpus directory] [baseline file] [repeats]
+ *
+ *  With more than one repeat the median time and allocation of each board
+ *  are kept.  One is usually enough, as the test below already treats the
+ *  boards of a bucket as repeated measurements.
+ *
+ *  The corpus is written with seed 1 if the directory has none.  Without a
+ *  baseline the run becomes the baseline; otherwise the run is saved next to
+ *  it as benchmark-results.tsv and a table is printed with the change of
+ *  each measure per search method and depth bucket.
+ *
+ *  A change is flagged as a regression when the bucket's total grew by more
+ *  than 5%.  The node and list counters are exact, so that is all they
+ *  need.  Time and allocation also have to be unlikely to be noise: the
+ *  same boards are run in both files, so the pairs are compared with a
+ *  one-sided Wilcoxon signed-rank test (the paired form of the Mann-Whitney
+ *  test).  One test is made per bucket, search method and measure that is
+ *  not exact (two, or all five for Anytime A*), enough that some would pass
+ *  p < 0.01 by chance alone, so that level is divided by the number of
+ *  tests made (Bonferroni); with 20 boards a bucket a consistent slowdown
+ *  still passes.  A longer solution than the baseline's is always flagged.
+ *  Anytime A* stops on a time budget, so its counters are tested like times
+ *  and its solution lengths are not checked.  The exit status is 1 if anything was flagged.
+ *
+ *  Allocation is read from the running thread, so it leaves out whatever
+ *  other threads allocate.  The portfolio (one thread per search) and the
+ *  cached goal trees (no counters) are not benchmarked.
+ */
+public class BenchmarkRunner {
+
+    public static final String[] ALGORITHMS = {"breadth", "greedy", "misplaced", "manhattan", "weighted",
+            "anytime", "idastar", "sma", "sma-misplaced", "beam", "breadth-bloom", "beam-bloom", "epea",
+            "fringe", "lrta"};
+
+    private static final String[] MEASURES = {"time", "nodes", "frontier", "closed", "alloc"};
+    private static final double SIGNIFICANCE = 0.01;
+    private static final double MIN_CHANGE = 0.05;
+    private static final int MIN_PAIRS = 6;
+
+    private static final Pattern ID_FIELD = Pattern.compile("\"id\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern DEPTH_FIELD = Pattern.compile("\"depth\"\\s*:\\s*(\\d+)");
+
+    /**
+     * the measures of one search method on one board.
+     */
+    private static class Sample {
+        String algorithm;
+        String id;
+        String bucket;
+        int depth;
+        long[] measures = new long[MEASURES.length];
+        int length;
+
+        String key()
+        {
+            return algorithm + " " + id;
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        File corpus = new File((args.length > 0) ? args[0] : "corpus");
+        File baselineFile = new File((args.length > 1) ? args[1] : "benchmark-baseline.tsv");
+        int repeats = (args.length > 2) ? Integer.parseInt(args[2]) : 1;
+
+        ArrayList<String> queries = loadCorpus(corpus);
+        System.out.println("corpus:   " + queries.size() + " boards from " + corpus);
+        System.out.println("warming up...");
+        for (String algorithm : ALGORITHMS)
+        {
+            //the easy boards are enough to get every search compiled.
+            for (String query : queries.subList(0, queries.size() / InstanceGenerator.BUCKETS.length))
+            {
+                measure(algorithm, query);
+            }
+        }
+
+        ArrayList<Sample> current = new ArrayList<>();
+        for (String algorithm : ALGORITHMS)
+        {
+            long started = System.nanoTime();
+            for (String query : queries)
+            {
+                current.add(measure(algorithm, query, repeats));
+            }
+            System.out.println(String.format("%-14s %8.1f ms", algorithm, (System.nanoTime() - started) / 1e6));
+        }
+
+        if (!baselineFile.exists())
+        {
+            write(current, baselineFile);
+            System.out.println("no baseline found; this run was saved as " + baselineFile);
+            return;
+        }
+        File resultsFile = new File(baselineFile.getAbsoluteFile().getParentFile(), "benchmark-results.tsv");
+        write(current, resultsFile);
+        System.out.println("results:  " + resultsFile);
+        boolean regressed = report(read(baselineFile), current);
+        if (regressed)
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the JSON lines of the 3x3 corpus, easy to hard, writing it first if missing.
+     */
+    private static ArrayList<String> loadCorpus(File directory) throws IOException
+    {
+        ArrayList<String> queries = new ArrayList<>();
+        for (String bucket : InstanceGenerator.BUCKETS)
+        {
+            File file = new File(directory, "corpus-3x3-" + bucket + ".ndjson");
+            if (!file.exists())
+            {
+                new InstanceGenerator(1).writeCorpus(directory, 3, 3, 20, 31);
+            }
+            queries.addAll(InstanceGenerator.readCorpus(file));
+        }
+        return queries;
+    }
+
+    private static Sample measure(String algorithm, String query, int repeats)
+    {
+        long[] times = new long[repeats];
+        long[] allocations = new long[repeats];
+        Sample sample = null;
+        for (int r = 0; r < repeats; r++)
+        {
+            sample = measure(algorithm, query);
+            times[r] = sample.measures[0];
+            allocations[r] = sample.measures[4];
+        }
+        //the counters are the same every time; take the median of the rest.
+        Arrays.sort(times);
+        Arrays.sort(allocations);
+        sample.measures[0] = times[repeats / 2];
+        sample.measures[4] = allocations[repeats / 2];
+        return sample;
+    }
+
+    private static Sample measure(String algorithm, String query)
+    {
+        SolveRequest request = SolveRequest.parse(query);
+        Sample sample = new Sample();
+        sample.algorithm = algorithm;
+        Matcher id = ID_FIELD.matcher(query);
+        sample.id = id.find() ? id.group(1) : Arrays.toString(request.getStart());
+        sample.bucket = bucketOf(sample.id);
+        Matcher depth = DEPTH_FIELD.matcher(query);
+        sample.depth = depth.find() ? Integer.parseInt(depth.group(1)) : -1;
+
+        Puzzle initState = Utility.createPuzzle(request.getStart(), request.getGoal());
+        long allocatedBefore = allocatedBytes();
+        long started = System.nanoTime();
+        Utility statistics = run(initState, algorithm);
+        long elapsed = System.nanoTime() - started;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        sample.measures[0] = elapsed;
+        sample.measures[1] = statistics.getTotalNodesExpanded();
+        sample.measures[2] = statistics.getMaxSizeOfFrontierList();
+        sample.measures[3] = statistics.getMaxSizeOfClosedList();
+        sample.measures[4] = allocated;
+        sample.length = statistics.getSolutionLength();
+        return sample;
+    }
+
+    /**
+     * runs the named search the way a {@code SolveRequest} does.
+     * @return the search's statistics.
+     */
+    private static Utility run(Puzzle initState, String algorithm)
+    {
+        return SolveRequest.runSearch(initState, algorithm).statistics;
+    }
+
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;   //not measurable on this JVM.
+    }
+
+    /**
+     * @return the bucket named in a corpus id such as "3x3-hard-0007".
+     */
+    private static String bucketOf(String id)
+    {
+        for (String bucket : InstanceGenerator.BUCKETS)
+        {
+            if (id.contains("-" + bucket + "-"))
+            {
+                return bucket;
+            }
+        }
+        return "other";
+    }
+
+    // ---- baseline file ---------------------------------------------------
+
+    private static void write(ArrayList<Sample> samples, File file) throws IOException
+    {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8"))
+        {
+            out.println("# java " + System.getProperty("java.version") + ", "
+                    + Runtime.getRuntime().availableProcessors() + " processors");
+            out.println("# algorithm\tid\tbucket\tdepth\ttime ns\tnodes\tfrontier\tclosed\talloc bytes\tlength");
+            for (Sample sample : samples)
+            {
+                StringBuilder line = new StringBuilder();
+                line.append(sample.algorithm).append('\t').append(sample.id).append('\t').append(sample.bucket)
+                        .append('\t').append(sample.depth);
+                for (long measure : sample.measures)
+                {
+                    line.append('\t').append(measure);
+                }
+                line.append('\t').append(sample.length);
+                out.println(line);
+            }
+        }
+    }
+
+    private static ArrayList<Sample> read(File file) throws IOException
+    {
+        ArrayList<Sample> samples = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath()))
+        {
+            if (line.startsWith("#") || line.trim().isEmpty())
+            {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            Sample sample = new Sample();
+            sample.algorithm = fields[0];
+            sample.id = fields[1];
+            sample.bucket = fields[2];
+            sample.depth = Integer.parseInt(fields[3]);
+            for (int m = 0; m < MEASURES.length; m++)
+            {
+                sample.measures[m] = Long.parseLong(fields[4 + m]);
+            }
+            sample.length = Integer.parseInt(fields[4 + MEASURES.length]);
+            samples.add(sample);
+        }
+        return samples;
+    }
+
+    // ---- report ----------------------------------------------------------
+
+    /**
+     * prints the change of every measure per search method and bucket,
+     * with the flagged ones marked "!".
+     * @return whether anything was flagged.
+     */
+    private static boolean report(ArrayList<Sample> baseline, ArrayList<Sample> current)
+    {
+        HashMap<String, Sample> before = new HashMap<>();
+        for (Sample sample : baseline)
+        {
+            before.put(sample.key(), sample);
+        }
+        //pairs of (baseline, current) by "algorithm bucket", in the order they were run.
+        LinkedHashMap<String, ArrayList<Sample[]>> groups = new LinkedHashMap<>();
+        for (Sample sample : current)
+        {
+            Sample old = before.get(sample.key());
+            if (old != null)
+            {
+                groups.computeIfAbsent(sample.algorithm + " " + sample.bucket, k -> new ArrayList<>())
+                        .add(new Sample[] {old, sample});
+            }
+        }
+
+        StringBuilder header = new StringBuilder(String.format("%-14s %-7s %5s", "algorithm", "bucket", "pairs"));
+        for (String measure : MEASURES)
+        {
+            header.append(String.format(" %9s", measure));
+        }
+        System.out.println();
+        System.out.println(header.append("  length"));
+
+        int tests = 0;
+        for (String group : groups.keySet())
+        {
+            for (int m = 0; m < MEASURES.length; m++)
+            {
+                if (!isExact(m, group.split(" ")[0]))
+                {
+                    tests++;
+                }
+            }
+        }
+        double level = SIGNIFICANCE / Math.max(tests, 1);
+        ArrayList<String> flagged = new ArrayList<>();
+        for (String group : groups.keySet())
+        {
+            ArrayList<Sample[]> pairs = groups.get(group);
+            String[] names = group.split(" ");
+            StringBuilder row = new StringBuilder(String.format("%-14s %-7s %5d", names[0], names[1], pairs.size()));
+            for (int m = 0; m < MEASURES.length; m++)
+            {
+                double[] old = new double[pairs.size()];
+                double[] now = new double[pairs.size()];
+                double oldTotal = 0;
+                double nowTotal = 0;
+                for (int i = 0; i < pairs.size(); i++)
+                {
+                    old[i] = pairs.get(i)[0].measures[m];
+                    now[i] = pairs.get(i)[1].measures[m];
+                    oldTotal += old[i];
+                    nowTotal += now[i];
+                }
+                double change = (oldTotal == 0) ? ((nowTotal == 0) ? 0 : 1) : nowTotal / oldTotal - 1;
+                boolean exact = isExact(m, names[0]);
+                double p = exact ? 0 : signedRankTest(old, now);
+                boolean regression = change > MIN_CHANGE && p < level;
+                row.append(String.format(" %+8.1f%%", 100 * change).replace("%", regression ? "!" : "%"));
+                if (regression)
+                {
+                    flagged.add(String.format("%s %s: %s %+.1f%%", names[0], names[1], MEASURES[m], 100 * change)
+                            + (exact ? "" : String.format(" (p = %.2g)", p)));
+                }
+            }
+            int longer = 0;
+            for (Sample[] pair : pairs)
+            {
+                if (pair[1].length > pair[0].length && !names[0].equals("anytime"))
+                {
+                    longer++;
+                }
+            }
+            row.append((longer == 0) ? "  same" : "  " + longer + " longer!");
+            if (longer > 0)
+            {
+                flagged.add(names[0] + " " + names[1] + ": " + longer + " solutions longer than the baseline's");
+            }
+            System.out.println(row);
+        }
+
+        System.out.println();
+        if (flagged.isEmpty())
+        {
+            System.out.println("no regressions.");
+        } else
+        {
+            System.out.println(flagged.size() + " regressions:");
+            for (String line : flagged)
+            {
+                System.out.println("  " + line);
+            }
+        }
+        return !flagged.isEmpty();
+    }
+
+    /**
+     * @return true if measure {@code m} of {@code algorithm} is the same on
+     * every run, so a change in it needs no test: the node and list counters,
+     * except for Anytime A*, which stops on a time budget.
+     */
+    private static boolean isExact(int m, String algorithm)
+    {
+        return m >= 1 && m <= 3 && !algorithm.equals("anytime");
+    }
+
+    /**
+     * one-sided Wilcoxon signed-rank test, normal approximation with ties
+     * accounted for.  pairs with no difference are left out.
+     * @return the probability of the current values rising at least this
+     * much over the baseline's by chance, 1 if too few pairs differ.
+     */
+    static double signedRankTest(double[] baseline, double[] current)
+    {
+        ArrayList<Double> differences = new ArrayList<>();
+        for (int i = 0; i < baseline.length; i++)
+        {
+            if (current[i] != baseline[i])
+            {
+                differences.add(current[i] - baseline[i]);
+            }
+        }
+        int n = differences.size();
+        if (n < MIN_PAIRS)
+        {
+            return 1.0;
+        }
+        differences.sort((a, b) -> Double.compare(Math.abs(a), Math.abs(b)));
+
+        double positiveRanks = 0;
+        double tieCorrection = 0;
+        for (int i = 0; i < n; )
+        {
+            int j = i;
+            while (j + 1 < n && Math.abs(differences.get(j + 1)) == Math.abs(differences.get(i)))
+            {
+                j++;
+            }
+            double rank = (i + j) / 2.0 + 1;     //ties share the average of their ranks.
+            for (int k = i; k <= j; k++)
+            {
+                if (differences.get(k) > 0)
+                {
+                    positiveRanks += rank;
+                }
+            }
+            double tied = j - i + 1;
+            tieCorrection += tied * tied * tied - tied;
+            i = j + 1;
+        }
+        double mean = n * (n + 1) / 4.0;
+        double variance = n * (n + 1) * (2 * n + 1) / 24.0 - tieCorrection / 48.0;
+        if (variance <= 0)
+        {
+            return 1.0;
+        }
+        double z = (positiveRanks - mean - 0.5) / Math.sqrt(variance);
+        return 1 - normalCdf(z);
+    }
+
+    /**
+     * the standard normal distribution, from the error function
+     * approximation of Abramowitz and Stegun (7.1.26), good to about 1e-7.
+     */
+    private static double normalCdf(double z)
+    {
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * x);
+        double erf = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027
+                + t * 1.061405429)))) * Math.exp(-x * x);
+        return (z >= 0) ? (1 + erf) / 2 : (1 - erf) / 2;
+    }
+}
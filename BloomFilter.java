@@ -0,0 +1,175 @@
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  A blocked Bloom filter of packed game states, for searches whose state
+ *  space is too big for an exact closed list.  Each state hashes to one
+ *  512-bit block (one cache line) and sets k bits inside it, so a lookup
+ *  touches a single line of memory however large the filter is.
+ *
+ *  The filter never forgets a state it was given, but it may claim to have
+ *  seen one it was not given (a false positive); a search using it may then
+ *  prune a new state and lose completeness.  The odds grow as the filter
+ *  fills, so it keeps a running estimate of how many states were wrongly
+ *  pruned so far.
+ */
+public class BloomFilter {
+
+    private static final int WORDS_PER_BLOCK = 8;      //512 bits.
+    private static final int BLOCK_BITS = 64 * WORDS_PER_BLOCK;
+
+    private long[] words;
+    private long blocks;
+    private int hashes;
+    private long bitsSet = 0;
+    private long statesAdded = 0;
+    private double expectedFalsePositives = 0;
+
+    /**
+     * @param memoryBytes the size of the bit array; rounded down to whole blocks, at least one.
+     * @param falsePositiveRate the rate wanted once the filter holds {@code getCapacity()} states;
+     *                          it sets the number of bits per state.
+     */
+    public BloomFilter(long memoryBytes, double falsePositiveRate)
+    {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+        {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1, was "
+                    + falsePositiveRate);
+        }
+        blocks = Math.max(1, memoryBytes / (WORDS_PER_BLOCK * 8));
+        if (blocks * WORDS_PER_BLOCK > Integer.MAX_VALUE - 8)
+        {
+            throw new IllegalArgumentException("Filter of " + memoryBytes + " bytes is too large");
+        }
+        words = new long[(int) (blocks * WORDS_PER_BLOCK)];
+        hashes = (int) Math.max(1, Math.round(-Math.log(falsePositiveRate) / Math.log(2)));
+    }
+
+    /**
+     * adds a state unless the filter already reports it.
+     * @return true if the state was new to the filter, false if it was (possibly wrongly) reported as seen.
+     */
+    public boolean add(long state)
+    {
+        if (mightContain(state))
+        {
+            return false;
+        }
+        put(state);
+        return true;
+    }
+
+    /**
+     * checks a state without adding it; a search that only keeps some of the
+     * states it checks adds those with {@code put}.
+     * @return whether the state may have been added; false means it certainly was not.
+     */
+    public boolean mightContain(long state)
+    {
+        long hash = mix(state);
+        int block = blockOf(hash);
+        long probe = hash;
+        for (int i = 0; i < hashes; i++)
+        {
+            probe = mix(probe);
+            int bit = (int) (probe >>> 55);     //9 bits, 0 to 511.
+            if ((words[block + (bit >>> 6)] & (1L << bit)) == 0)
+            {
+                //for every state that gets through, about p / (1 - p) others were stopped wrongly.
+                double rate = getFalsePositiveRate();
+                expectedFalsePositives += rate / (1 - rate);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * adds a state that {@code mightContain} has let through.
+     */
+    public void put(long state)
+    {
+        long hash = mix(state);
+        int block = blockOf(hash);
+        long probe = hash;
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++)
+        {
+            probe = mix(probe);
+            int bit = (int) (probe >>> 55);
+            int word = block + (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words[word] & mask) == 0)
+            {
+                words[word] |= mask;
+                bitsSet++;
+                changed = true;
+            }
+        }
+        if (changed)
+        {
+            statesAdded++;
+        }
+    }
+
+    /**
+     * @return the first word of the block the hash picks, spread evenly over all the blocks.
+     */
+    private int blockOf(long hash)
+    {
+        return (int) (((hash >>> 32) * blocks) >>> 32) * WORDS_PER_BLOCK;
+    }
+
+    /**
+     * the 64-bit finaliser of SplitMix; spreads the few bits that differ
+     * between neighbouring boards over the whole word.
+     */
+    private static long mix(long value)
+    {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * @return the chance, at the current fill, that a state never added is
+     * reported as seen.  blocks fill unevenly, so the true rate is a little higher.
+     */
+    public double getFalsePositiveRate()
+    {
+        return Math.pow((double) bitsSet / ((double) blocks * BLOCK_BITS), hashes);
+    }
+
+    /**
+     * @return how many states the filter holds before its false positive
+     * rate passes the one it was built for.
+     */
+    public long getCapacity()
+    {
+        return (long) (blocks * BLOCK_BITS * Math.log(2) / hashes);
+    }
+
+    /**
+     * @return the estimated number of new states reported as seen so far.
+     */
+    public double getExpectedFalsePositives()
+    {
+        return expectedFalsePositives;
+    }
+
+    public long getStatesAdded()
+    {
+        return statesAdded;
+    }
+
+    public int getHashes()
+    {
+        return hashes;
+    }
+
+    public long getMemoryBytes()
+    {
+        return (long) words.length * 8;
+    }
+}
@@ -26,6 +26,18 @@ public class BreadthFirst {
         this.saveToDisk = saveToDisk;
         statisticsGatherer = new Utility(1);
     }
+
+    /**
+     * keeps the states already seen in a Bloom filter instead of an exact
+     * closed list, for boards too big to remember every state.  see
+     * {@code Utility.setDuplicateFilter} for what that costs.
+     * @param memoryBytes size of the filter.
+     * @param falsePositiveRate the rate wanted when the filter is full.
+     */
+    public void useDuplicateFilter(long memoryBytes, double falsePositiveRate)
+    {
+        statisticsGatherer.setDuplicateFilter(new BloomFilter(memoryBytes, falsePositiveRate));
+    }
     
     /**
     Runs the given search method and returns the solution path in 
@@ -35,4 +47,13 @@ public class BreadthFirst {
         solutionList = Utility.runSearch(currentState, statisticsGatherer, saveToDisk);
         return solutionList;
     }
+
+    /**
+     * @return the performance stats of the last {@code Search()}; the ASCII
+     * report is only drawn when saving to disk.
+     */
+    public Utility getStatistics()
+    {
+        return statisticsGatherer;
+    }
 }
@@ -0,0 +1,245 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  The exact distance of every 3x3 board from a goal, found once by a
+ *  Breadth Search over the whole state space (181,440 reachable boards) and
+ *  then looked up in constant time.  Boards are indexed by their rank among
+ *  the 9! orderings of the numbers 0-8, one byte each.
+ *
+ *  Only 9 tables are ever built, one for each square the goal's blank can
+ *  be on.  Any other goal is turned into the canonical goal with its blank
+ *  on the same square (tiles 1-8 in order on the other squares) by renaming
+ *  the tiles; renaming the tiles of the start the same way keeps every
+ *  distance.  Each table is 362,880 bytes and is built the first time a
+ *  goal with that blank square is asked about.
+ */
+public class EightPuzzleTable {
+
+    public static final int UNREACHABLE = -1;
+
+    private static final int SIZE = 9;
+    private static final int BOARDS = 362880;       //9!
+    private static final byte UNSEEN = (byte) 0xff;
+
+    private static final byte[][] TABLES = new byte[SIZE][];
+
+    /**
+     * @param start the start board by position index, 0 for the blank.
+     * @param goal the goal board by position index, 0 for the blank.
+     * @return the number of moves of a shortest solution, or UNREACHABLE.
+     */
+    public static int distance(int[] start, int[] goal)
+    {
+        int value = tableFor(goal)[rank(PackedBoard.relabel(start, goal))];
+        return (value == UNSEEN) ? UNREACHABLE : value & 0xff;
+    }
+
+    /**
+     * a shortest solution read off the table, stepping each time to a
+     * neighbour one move closer.
+     * @return the moves, or null if the goal cannot be reached.
+     */
+    public static MoveSequence solve(int[] start, int[] goal)
+    {
+        byte[] table = tableFor(goal);
+        int[] board = PackedBoard.relabel(start, goal);
+        int distance = table[rank(board)] & 0xff;
+        if (distance == (UNSEEN & 0xff))
+        {
+            return null;
+        }
+        MoveSequence moves = new MoveSequence();
+        int[] targets = new int[4];
+        int blank = PackedBoard.blankOf(board);
+        while (distance > 0)
+        {
+            int count = PackedBoard.neighbours(blank, 3, 3, targets);
+            for (int i = 0; i < count; i++)
+            {
+                swap(board, blank, targets[i]);
+                if ((table[rank(board)] & 0xff) == distance - 1)
+                {
+                    moves.add(MoveSequence.directionOf(targets[i] - blank, 3));
+                    blank = targets[i];
+                    distance--;
+                    break;
+                }
+                swap(board, blank, targets[i]);
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * @param depth the wanted number of moves of a shortest solution, 0-31.
+     * @param goal the goal board by position index, 0 for the blank.
+     * @param random source of the choice; every board at that depth is equally likely.
+     * @return a start board exactly {@code depth} moves from the goal, or null if there is none.
+     */
+    public static int[] randomAtDepth(int depth, int[] goal, Random random)
+    {
+        byte[] table = tableFor(goal);
+        int count = 0;
+        for (byte value : table)
+        {
+            if (value == depth)
+            {
+                count++;
+            }
+        }
+        if (count == 0)
+        {
+            return null;
+        }
+        int pick = random.nextInt(count);
+        for (int i = 0; i < BOARDS; i++)
+        {
+            if (table[i] == depth && pick-- == 0)
+            {
+                //back from the canonical names to the goal's.
+                int[] canonical = unrank(i);
+                int[] nameOf = new int[SIZE];
+                int[] canonicalGoal = PackedBoard.canonicalGoal(SIZE, PackedBoard.blankOf(goal));
+                for (int square = 0; square < SIZE; square++)
+                {
+                    nameOf[canonicalGoal[square]] = goal[square];
+                }
+                int[] board = new int[SIZE];
+                for (int square = 0; square < SIZE; square++)
+                {
+                    board[square] = nameOf[canonical[square]];
+                }
+                return board;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return how many boards are at each distance from a goal with its
+     * blank on {@code blankSquare}, index 0 to the largest distance.
+     */
+    public static long[] histogram(int blankSquare)
+    {
+        byte[] table = tableFor(PackedBoard.canonicalGoal(SIZE, blankSquare));
+        long[] counts = new long[32];
+        int deepest = 0;
+        for (byte value : table)
+        {
+            if (value != UNSEEN)
+            {
+                counts[value]++;
+                deepest = Math.max(deepest, value);
+            }
+        }
+        return Arrays.copyOf(counts, deepest + 1);
+    }
+
+    private static synchronized byte[] tableFor(int[] goal)
+    {
+        if (goal.length != SIZE)
+        {
+            throw new IllegalArgumentException("The distance table is for 3x3 boards only");
+        }
+        int blank = PackedBoard.blankOf(goal);
+        if (TABLES[blank] == null)
+        {
+            TABLES[blank] = build(PackedBoard.canonicalGoal(SIZE, blank));
+        }
+        return TABLES[blank];
+    }
+
+    /**
+     * Breadth Search from the goal over every reachable board.
+     */
+    private static byte[] build(int[] goal)
+    {
+        byte[] table = new byte[BOARDS];
+        Arrays.fill(table, UNSEEN);
+        int[] queue = new int[BOARDS / 2];
+        int head = 0;
+        int tail = 0;
+        int goalRank = rank(goal);
+        table[goalRank] = 0;
+        queue[tail++] = goalRank;
+        int[] targets = new int[4];
+        while (head < tail)
+        {
+            int current = queue[head++];
+            int[] board = unrank(current);
+            int blank = PackedBoard.blankOf(board);
+            int distance = table[current];
+            int count = PackedBoard.neighbours(blank, 3, 3, targets);
+            for (int i = 0; i < count; i++)
+            {
+                swap(board, blank, targets[i]);
+                int child = rank(board);
+                if (table[child] == UNSEEN)
+                {
+                    table[child] = (byte) (distance + 1);
+                    queue[tail++] = child;
+                }
+                swap(board, blank, targets[i]);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return the position of the board among all orderings of 0-8 (its Lehmer code).
+     */
+    private static int rank(int[] board)
+    {
+        int rank = 0;
+        for (int i = 0; i < SIZE; i++)
+        {
+            int smallerLater = 0;
+            for (int j = i + 1; j < SIZE; j++)
+            {
+                if (board[j] < board[i])
+                {
+                    smallerLater++;
+                }
+            }
+            rank = rank * (SIZE - i) + smallerLater;
+        }
+        return rank;
+    }
+
+    private static int[] unrank(int rank)
+    {
+        int[] digits = new int[SIZE];
+        for (int i = SIZE - 1; i >= 0; i--)
+        {
+            digits[i] = rank % (SIZE - i);
+            rank /= (SIZE - i);
+        }
+        boolean[] used = new boolean[SIZE];
+        int[] board = new int[SIZE];
+        for (int i = 0; i < SIZE; i++)
+        {
+            int skip = digits[i];
+            for (int number = 0; number < SIZE; number++)
+            {
+                if (!used[number] && skip-- == 0)
+                {
+                    board[i] = number;
+                    used[number] = true;
+                    break;
+                }
+            }
+        }
+        return board;
+    }
+
+    private static void swap(int[] board, int i, int j)
+    {
+        int held = board[i];
+        board[i] = board[j];
+        board[j] = held;
+    }
+}
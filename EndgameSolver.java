@@ -0,0 +1,397 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Solves boards far too large for an optimal search (5x5 and up) the way
+ *  people do: one outer row or column at a time is put in place and never
+ *  touched again, until a 3x3 is left, and that is finished with a
+ *  shortest solution from {@code EightPuzzleTable}.  The solution is not
+ *  the shortest, but its length is bounded by the board size, and a board
+ *  takes well under a millisecond once the tables are built.
+ *
+ *  Rows are taken from the top or the bottom and columns from the left or
+ *  the right, whichever keeps the goal's blank inside what is left, so any
+ *  goal works.  The tiles of a row are placed two at a time (the first one
+ *  alone if the row is odd), which also takes care of the awkward last two
+ *  tiles of a row.  Moving two tiles and the blank while the placed squares
+ *  stay put only depends on where those three are, not on the other tiles,
+ *  so each step is looked up in a macro table: the exact number of moves to
+ *  finish the pair from every position of the two tiles and the blank,
+ *  found once by a Breadth Search back from the finished positions.  A
+ *  table only depends on the shape of what is left and how much of the row
+ *  is done, so every row and column of every board shares a few of them.
+ *
+ *  The moves are the directions the blank slides in, as in
+ *  {@code MoveSequence}; on a 3x3 board they replay onto a {@code Puzzle}.
+ */
+public class EndgameSolver {
+
+    public static final int MAX_SQUARES = 100;  //a macro table has squares^3 entries, 2 MB at 10x10.
+
+    private static final int FINAL_SIDE = 3;   //left for EightPuzzleTable.
+    private static final short UNSEEN = -1;
+
+    //macro tables by shape of what is left, squares of the row done and tiles placed at once.
+    private static final ConcurrentHashMap<Long, short[]> MACRO_TABLES = new ConcurrentHashMap<>();
+
+    private int width;
+    private int height;
+    private int[] goal;
+    private int[] board;
+    private int[] squareOf;     //where each tile is on the board right now.
+    private MoveSequence moves;
+
+    //the part of the board not yet finished.
+    private int top;
+    private int bottom;
+    private int left;
+    private int right;
+
+    /**
+     * @param width number of squares per row, at least 3.
+     * @param height number of rows, at least 3; width * height may be at most MAX_SQUARES.
+     * @param goal the goal board by position index, 0 for the blank.
+     */
+    public EndgameSolver(int width, int height, int[] goal)
+    {
+        if (width < FINAL_SIDE || height < FINAL_SIDE || width * height > MAX_SQUARES || goal.length != width * height)
+        {
+            throw new IllegalArgumentException("Board must be at least 3x3, at most " + MAX_SQUARES
+                    + " squares, and have width * height squares");
+        }
+        this.width = width;
+        this.height = height;
+        this.goal = goal.clone();
+    }
+
+    /**
+     * @param start the start board by position index, 0 for the blank.
+     * @return the moves, or null if the goal cannot be reached.
+     */
+    public MoveSequence solve(int[] start)
+    {
+        if (!Utility.isSolvable(start, goal, width))
+        {
+            return null;
+        }
+        board = start.clone();
+        squareOf = new int[board.length];
+        for (int square = 0; square < board.length; square++)
+        {
+            squareOf[board[square]] = square;
+        }
+        moves = new MoveSequence();
+        top = 0;
+        bottom = height - 1;
+        left = 0;
+        right = width - 1;
+
+        int goalBlank = 0;
+        while (goal[goalBlank] != 0)
+        {
+            goalBlank++;
+        }
+        int blankRow = goalBlank / width;
+        int blankColumn = goalBlank % width;
+        while (bottom - top + 1 > FINAL_SIDE || right - left + 1 > FINAL_SIDE)
+        {
+            int rows = bottom - top + 1;
+            int columns = right - left + 1;
+            if (rows > FINAL_SIDE && (rows >= columns || columns == FINAL_SIDE))
+            {
+                if (blankRow != top)
+                {
+                    finishLine(new Line(top, left, 1, 0, 0, 1, rows, columns));
+                    top++;
+                } else
+                {
+                    finishLine(new Line(bottom, left, -1, 0, 0, 1, rows, columns));
+                    bottom--;
+                }
+            } else if (blankColumn != left)
+            {
+                finishLine(new Line(top, left, 0, 1, 1, 0, columns, rows));
+                left++;
+            } else
+            {
+                finishLine(new Line(top, right, 0, -1, 1, 0, columns, rows));
+                right--;
+            }
+        }
+        finishLastSquare();
+        return moves;
+    }
+
+    /**
+     * the row or column being finished, seen as the top row of a grid of
+     * {@code across} rows and {@code along} columns: square (r, c) of the
+     * grid is board square (row + r * rowStep + c * alongRowStep,
+     * column + r * columnStep + c * alongColumnStep).  turning or mirroring
+     * the board does not change which squares are next to each other, so
+     * one set of macro tables serves all four sides.
+     */
+    private class Line {
+        int row;
+        int column;
+        int rowStep;
+        int columnStep;
+        int alongRowStep;
+        int alongColumnStep;
+        int across;
+        int along;
+
+        Line(int row, int column, int rowStep, int columnStep, int alongRowStep, int alongColumnStep,
+             int across, int along)
+        {
+            this.row = row;
+            this.column = column;
+            this.rowStep = rowStep;
+            this.columnStep = columnStep;
+            this.alongRowStep = alongRowStep;
+            this.alongColumnStep = alongColumnStep;
+            this.across = across;
+            this.along = along;
+        }
+
+        /**
+         * @return the board square of grid square {@code cell} (r * along + c).
+         */
+        int toBoard(int cell)
+        {
+            int r = cell / along;
+            int c = cell % along;
+            return (row + r * rowStep + c * alongRowStep) * width + column + r * columnStep + c * alongColumnStep;
+        }
+
+        /**
+         * @return the grid square of a board square inside what is left.
+         */
+        int toGrid(int square)
+        {
+            int dRow = square / width - row;
+            int dColumn = square % width - column;
+            //exactly one of the steps across and one of the steps along is non-zero.
+            int r = (rowStep != 0) ? dRow * rowStep : dColumn * columnStep;
+            int c = (alongRowStep != 0) ? dRow * alongRowStep : dColumn * alongColumnStep;
+            return r * along + c;
+        }
+    }
+
+    /**
+     * puts the goal's tiles of the line's top row in place, two at a time.
+     */
+    private void finishLine(Line line)
+    {
+        int done = 0;
+        if (line.along % 2 == 1)
+        {
+            placeTiles(line, done, 1);
+            done++;
+        }
+        while (done < line.along)
+        {
+            placeTiles(line, done, 2);
+            done += 2;
+        }
+    }
+
+    /**
+     * moves the goal's tiles for grid squares (0, done) to (0, done + count - 1)
+     * into place by the macro table, without touching squares (0, 0) to (0, done - 1).
+     */
+    private void placeTiles(Line line, int done, int count)
+    {
+        int cells = line.across * line.along;
+        short[] table = macroTable(line.across, line.along, done, count);
+        int[] tiles = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            tiles[i] = goal[line.toBoard(done + i)];
+        }
+        int[] at = new int[count + 1];      //grid squares of the tiles, then the blank.
+        for (int i = 0; i < count; i++)
+        {
+            at[i] = line.toGrid(squareOf[tiles[i]]);
+        }
+        at[count] = line.toGrid(squareOf[0]);
+
+        int distance = table[index(at, cells)];
+        int[] next = new int[count + 1];
+        while (distance > 0)
+        {
+            int blank = at[count];
+            boolean stepped = false;
+            for (int target : gridNeighbours(blank, line.across, line.along, done))
+            {
+                stepTo(at, next, target);
+                if (table[index(next, cells)] == distance - 1)
+                {
+                    slideBlank(line.toBoard(target));
+                    System.arraycopy(next, 0, at, 0, at.length);
+                    distance--;
+                    stepped = true;
+                    break;
+                }
+            }
+            if (!stepped)
+            {
+                throw new IllegalStateException("Macro table has no way down from " + Arrays.toString(at));
+            }
+        }
+    }
+
+    /**
+     * the positions after the blank in {@code at} slides to {@code target}.
+     */
+    private static void stepTo(int[] at, int[] next, int target)
+    {
+        int blank = at[at.length - 1];
+        for (int i = 0; i < at.length - 1; i++)
+        {
+            next[i] = (at[i] == target) ? blank : at[i];
+        }
+        next[at.length - 1] = target;
+    }
+
+    private static int index(int[] at, int cells)
+    {
+        int index = 0;
+        for (int position : at)
+        {
+            index = index * cells + position;
+        }
+        return index;
+    }
+
+    /**
+     * @return the grid squares next to {@code cell}, leaving out the finished squares (0, 0) to (0, done - 1).
+     */
+    private static int[] gridNeighbours(int cell, int across, int along, int done)
+    {
+        int[] targets = new int[4];
+        int count = PackedBoard.neighbours(cell, along, across, targets);
+        int kept = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (targets[i] >= done)
+            {
+                targets[kept++] = targets[i];
+            }
+        }
+        return Arrays.copyOf(targets, kept);
+    }
+
+    /**
+     * the moves to finish {@code count} tiles from every position of them
+     * and the blank, indexed by {@code index}; UNSEEN where they cannot be.
+     */
+    private static short[] macroTable(int across, int along, int done, int count)
+    {
+        long key = (((long) across * 256 + along) * 256 + done) * 4 + count;
+        return MACRO_TABLES.computeIfAbsent(key, k -> buildMacroTable(across, along, done, count));
+    }
+
+    /**
+     * Breadth Search back from every finished position: the tiles on
+     * (0, done) onwards and the blank on any other square still free.
+     */
+    private static short[] buildMacroTable(int across, int along, int done, int count)
+    {
+        int cells = across * along;
+        int states = 1;
+        for (int i = 0; i <= count; i++)
+        {
+            states *= cells;
+        }
+        short[] table = new short[states];
+        Arrays.fill(table, UNSEEN);
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+
+        int[] at = new int[count + 1];
+        for (int i = 0; i < count; i++)
+        {
+            at[i] = done + i;
+        }
+        for (int blank = done + count; blank < cells; blank++)
+        {
+            at[count] = blank;
+            int start = index(at, cells);
+            table[start] = 0;
+            queue[tail++] = start;
+        }
+
+        int[][] neighbours = new int[cells][];
+        for (int cell = 0; cell < cells; cell++)
+        {
+            neighbours[cell] = gridNeighbours(cell, across, along, done);
+        }
+        int[] next = new int[count + 1];
+        while (head < tail)
+        {
+            int current = queue[head++];
+            for (int i = count, rest = current; i >= 0; i--, rest /= cells)
+            {
+                at[i] = rest % cells;
+            }
+            short distance = (short) (table[current] + 1);
+            for (int target : neighbours[at[count]])
+            {
+                stepTo(at, next, target);
+                int child = index(next, cells);
+                if (table[child] == UNSEEN)
+                {
+                    table[child] = distance;
+                    queue[tail++] = child;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * finishes the 3x3 that is left with a shortest solution from
+     * {@code EightPuzzleTable}, after renaming its tiles 1-8.
+     */
+    private void finishLastSquare()
+    {
+        int side = FINAL_SIDE * FINAL_SIDE;
+        int[] newName = new int[board.length];
+        int[] smallGoal = new int[side];
+        int[] smallStart = new int[side];
+        int tile = 1;
+        for (int i = 0; i < side; i++)
+        {
+            int number = goal[(top + i / FINAL_SIDE) * width + left + i % FINAL_SIDE];
+            newName[number] = (number == 0) ? 0 : tile++;
+            smallGoal[i] = newName[number];
+        }
+        for (int i = 0; i < side; i++)
+        {
+            smallStart[i] = newName[board[(top + i / FINAL_SIDE) * width + left + i % FINAL_SIDE]];
+        }
+        MoveSequence last = EightPuzzleTable.solve(smallStart, smallGoal);
+        for (int i = 0; i < last.length(); i++)
+        {
+            slideBlank(squareOf[0] + MoveSequence.offsetOf(last.get(i), width));
+        }
+    }
+
+    /**
+     * slides the blank onto the board square {@code target} next to it and records the move.
+     */
+    private void slideBlank(int target)
+    {
+        int blank = squareOf[0];
+        int tile = board[target];
+        board[blank] = tile;
+        squareOf[tile] = blank;
+        board[target] = 0;
+        squareOf[0] = target;
+        moves.add(MoveSequence.directionOf(target - blank, width));
+    }
+}
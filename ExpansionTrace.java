@@ -0,0 +1,118 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Records every expansion of a search into a memory-mapped file, for
+ *  {@code TraceAnalyzer} to look at afterwards.  The file is a header and
+ *  then a ring of fixed size records; when the ring is full the oldest
+ *  expansions are written over, so it always holds the latest ones.  Each
+ *  record is 16 bytes:
+ *
+ *      bytes 0-7    packed board
+ *      bytes 8-11   expansion number of the parent, -1 for the start state
+ *      bytes 12-13  depth, g(n)
+ *      bytes 14-15  heuristic, h(n)
+ *
+ *  A record's own expansion number is implied by its place in the ring and
+ *  the count in the header.  That count is written after every record, and
+ *  the operating system writes mapped pages out on its own, so the file is
+ *  readable even if the search never finishes.  Recording is a few puts into
+ *  mapped memory and no allocation; a search with no trace set only tests a
+ *  field for null.
+ *
+ *  The searches that have node numbers for parents ({@code OffHeapAStar},
+ *  and so EPEA*, and {@code FringeSearch}) take a trace with
+ *  {@code setTrace}.
+ */
+public class ExpansionTrace implements AutoCloseable {
+
+    static final int MAGIC = 0x54524331;        //"TRC1"
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 16;
+    public static final int DEFAULT_CAPACITY = 1 << 22;      //64 MB of records.
+
+    private RandomAccessFile file;
+    private MappedByteBuffer records;
+    private int capacity;
+    private long recorded = 0;
+    private int[] orderOf = new int[1 << 12];  //latest expansion number of each node of the search.
+
+    /**
+     * creates (or empties) the trace file.  header:
+     *
+     *      bytes 0-3    MAGIC
+     *      bytes 4-5    width,  bytes 6-7 height
+     *      bytes 8-11   capacity in records
+     *      bytes 12-19  packed goal board
+     *      bytes 20-27  expansions recorded so far, including any written over
+     *
+     * @param capacity the most expansions kept; older ones are written over.
+     * @throws IOException if the file cannot be created or mapped.
+     */
+    public ExpansionTrace(File path, int width, int height, int[] goal, int capacity) throws IOException
+    {
+        if (capacity < 1 || capacity > (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES)
+        {
+            throw new IllegalArgumentException("Trace capacity out of range: " + capacity);
+        }
+        this.capacity = capacity;
+        file = new RandomAccessFile(path, "rw");
+        file.setLength(0);
+        long bytes = HEADER_BYTES + (long) capacity * RECORD_BYTES;
+        records = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        records.putInt(0, MAGIC);
+        records.putShort(4, (short) width);
+        records.putShort(6, (short) height);
+        records.putInt(8, capacity);
+        records.putLong(12, PackedBoard.pack(goal));
+        records.putLong(20, 0);
+    }
+
+    /**
+     * records one expansion.
+     * @param node the search's number for the state expanded.
+     * @param parentNode the search's number for its parent, negative for the start state.
+     */
+    public void record(long state, int g, int h, int node, int parentNode)
+    {
+        int order = (int) recorded;
+        int offset = HEADER_BYTES + (int) (recorded % capacity) * RECORD_BYTES;
+        records.putLong(offset, state);
+        records.putInt(offset + 8, (parentNode < 0) ? -1 : orderOf[parentNode]);
+        records.putShort(offset + 12, (short) g);
+        records.putShort(offset + 14, (short) h);
+        recorded++;
+        records.putLong(20, recorded);
+
+        if (node >= orderOf.length)
+        {
+            orderOf = Arrays.copyOf(orderOf, Math.max(orderOf.length * 2, node + 1));
+        }
+        orderOf[node] = order;
+    }
+
+    /**
+     * @return expansions recorded, including any written over.
+     */
+    public long getRecorded()
+    {
+        return recorded;
+    }
+
+    /**
+     * writes the mapped records out and closes the file.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        records.force();
+        file.close();
+    }
+}
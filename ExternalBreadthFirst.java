@@ -0,0 +1,536 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Breadth first search that keeps its layers on disk instead of in an
+ *  {@code ArrayList}, for state spaces too large for memory such as 15-puzzle
+ *  pattern spaces.  Boards are handled as {@code PackedBoard} longs.
+ *
+ *  Every depth is one file of sorted, distinct packed boards.  To build the
+ *  next layer, the current layer is read through a memory map and all of its
+ *  children are collected in a fixed size buffer; each time the buffer fills
+ *  it is sorted and written out as a run.  The runs are then merged, and
+ *  since a move can only lead one layer up or down, a child is new exactly
+ *  when it is not in the current or the previous layer.  Duplicates are
+ *  therefore removed during the merge (delayed duplicate detection) and no
+ *  closed list is ever held in memory.
+ *
+ *  With a pattern, only the listed tiles are told apart; every other tile
+ *  is treated as the same "don't care" tile, which gives the abstract space
+ *  that pattern databases are built from.
+ *
+ *  After every layer a small checkpoint file (the layer sizes so far and
+ *  the disk accounting) is written next to the layers, which are already on
+ *  disk, so a search that is stopped can be continued with {@code resume}.
+ */
+public class ExternalBreadthFirst {
+
+    private static final int MAP_CHUNK_BYTES = 1 << 27;    //largest piece of a file mapped at once.
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+    private static final int CHECKPOINT_MAGIC = 0x42465331;    //"BFS1"
+    private static final String CHECKPOINT_NAME = "checkpoint.bin";
+
+    private int width;
+    private int height;
+    private int size;
+    private long startState;
+    private File workDirectory;
+    private long memoryBudgetBytes;
+    private long diskBudgetBytes;
+    private boolean keepLayers = false;
+
+    private ArrayList<Long> layerSizes = new ArrayList<>();
+    private long diskBytesInUse = 0;
+    private long peakDiskBytes = 0;
+    private int runsWritten = 0;
+    private long checkpointNanos = 0;
+
+    /**
+     * @param width number of squares per row.
+     * @param height number of rows; width * height may be at most 16.
+     * @param start the board the search starts from (usually the goal board, to
+     *              get every state's distance to the goal).
+     * @param patternTiles the tiles to tell apart, or null to tell all of them apart.
+     * @param workDirectory where the layer and run files are written.
+     * @param memoryBudgetBytes heap used for collecting children; the main memory cost of the search.
+     * @param diskBudgetBytes the search stops with an IOException rather than use more disk than this.
+     */
+    public ExternalBreadthFirst(int width, int height, int[] start, int[] patternTiles, File workDirectory,
+                                long memoryBudgetBytes, long diskBudgetBytes)
+    {
+        if (width * height > PackedBoard.MAX_SQUARES || start.length != width * height)
+        {
+            throw new IllegalArgumentException("Board must have width * height squares, at most "
+                    + PackedBoard.MAX_SQUARES);
+        }
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.startState = PackedBoard.pack(abstractBoard(start, patternTiles));
+        this.workDirectory = workDirectory;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.diskBudgetBytes = diskBudgetBytes;
+    }
+
+    /**
+     * replaces every tile that is not in the pattern by the same stand-in
+     * number: the lowest tile number not in the pattern.
+     */
+    public static int[] abstractBoard(int[] numbers, int[] patternTiles)
+    {
+        if (patternTiles == null)
+        {
+            return numbers.clone();
+        }
+        boolean[] inPattern = new boolean[numbers.length];
+        for (int tile : patternTiles)
+        {
+            inPattern[tile] = true;
+        }
+        int dontCare = 1;
+        while (dontCare < numbers.length && inPattern[dontCare])
+        {
+            dontCare++;
+        }
+
+        int[] abstracted = new int[numbers.length];
+        for (int i = 0; i < numbers.length; i++)
+        {
+            abstracted[i] = (numbers[i] == 0 || inPattern[numbers[i]]) ? numbers[i] : dontCare;
+        }
+        return abstracted;
+    }
+
+    /**
+     * keep every layer file after the search instead of only the last two;
+     * together they are a pattern database, one sorted file per distance.
+     */
+    public void setKeepLayers(boolean keepLayers)
+    {
+        this.keepLayers = keepLayers;
+    }
+
+    /**
+     * continues a search from the checkpoint in its work directory; call
+     * {@code run()} on the result.
+     * @param memoryBudgetBytes heap used for collecting children from now on.
+     * @param diskBudgetBytes the disk limit from now on.
+     * @throws IOException if there is no checkpoint or it cannot be read.
+     */
+    public static ExternalBreadthFirst resume(File workDirectory, long memoryBudgetBytes, long diskBudgetBytes)
+            throws IOException
+    {
+        File checkpoint = new File(workDirectory, CHECKPOINT_NAME);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint))))
+        {
+            if (in.readInt() != CHECKPOINT_MAGIC)
+            {
+                throw new IOException(checkpoint + " is not a breadth first search checkpoint");
+            }
+            int width = in.readInt();
+            int height = in.readInt();
+            long startState = in.readLong();
+            ExternalBreadthFirst search = new ExternalBreadthFirst(width, height,
+                    PackedBoard.unpack(startState, width * height), null, workDirectory,
+                    memoryBudgetBytes, diskBudgetBytes);
+            search.keepLayers = in.readBoolean();
+            search.runsWritten = in.readInt();
+            search.diskBytesInUse = in.readLong();
+            search.peakDiskBytes = in.readLong();
+            int layers = in.readInt();
+            for (int i = 0; i < layers; i++)
+            {
+                search.layerSizes.add(in.readLong());
+            }
+
+            //runs of a layer that was being built when the search stopped; the layer is built again.
+            File[] leftovers = workDirectory.listFiles((directory, name) -> name.startsWith("run-"));
+            if (leftovers != null)
+            {
+                for (File run : leftovers)
+                {
+                    run.delete();
+                }
+            }
+            return search;
+        }
+    }
+
+    /**
+     * runs the search until a layer comes out empty, or continues it if
+     * this search was made by {@code resume}.
+     * @return the distance histogram: entry d is the number of states at distance d from the start.
+     * @throws IOException if a file cannot be written or the disk budget would be exceeded.
+     */
+    public long[] run() throws IOException
+    {
+        if (!workDirectory.isDirectory() && !workDirectory.mkdirs())
+        {
+            throw new IOException("Cannot create " + workDirectory);
+        }
+
+        if (layerSizes.isEmpty())
+        {
+            try (LayerWriter first = new LayerWriter(layerFile(0)))
+            {
+                first.write(startState);
+            }
+            layerSizes.add(1L);
+            writeCheckpoint();
+        }
+
+        int depth = layerSizes.size() - 1;
+        if (depth >= 2 && !keepLayers && layerFile(depth - 2).exists())
+        {
+            delete(layerFile(depth - 2));   //stopped after the checkpoint, before this was deleted.
+        }
+        while (true)
+        {
+            File previous = (depth > 0) ? layerFile(depth - 1) : null;
+            File current = layerFile(depth);
+            File next = layerFile(depth + 1);
+
+            ArrayList<File> runs = expandLayer(current);
+            long count = mergeRuns(runs, previous, current, next);
+            for (File run : runs)
+            {
+                delete(run);
+            }
+            if (count == 0)
+            {
+                delete(next);
+                if (!keepLayers)
+                {
+                    if (previous != null)
+                    {
+                        delete(previous);
+                    }
+                    delete(current);
+                }
+                break;
+            }
+            layerSizes.add(count);
+            //the previous layer is only deleted once the checkpoint no longer needs it.
+            writeCheckpoint();
+            if (previous != null && !keepLayers)
+            {
+                delete(previous);
+            }
+            depth++;
+        }
+        new File(workDirectory, CHECKPOINT_NAME).delete();
+
+        long[] histogram = new long[layerSizes.size()];
+        for (int i = 0; i < histogram.length; i++)
+        {
+            histogram[i] = layerSizes.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * writes the children of every board in the layer as sorted runs of
+     * distinct boards, each at most as large as the memory budget allows.
+     */
+    private ArrayList<File> expandLayer(File layer) throws IOException
+    {
+        ArrayList<File> runs = new ArrayList<>();
+        long[] children = new long[(int) Math.max(1024, Math.min(Integer.MAX_VALUE - 8, memoryBudgetBytes / 8))];
+        int count = 0;
+        int[] targets = new int[4];
+
+        try (LayerReader reader = new LayerReader(layer))
+        {
+            while (reader.hasNext())
+            {
+                long state = reader.next();
+                int blank = PackedBoard.blankPosition(state, size);
+                int moves = PackedBoard.neighbours(blank, width, height, targets);
+                if (count + moves > children.length)
+                {
+                    runs.add(writeRun(children, count));
+                    count = 0;
+                }
+                for (int i = 0; i < moves; i++)
+                {
+                    children[count++] = PackedBoard.slide(state, blank, targets[i]);
+                }
+            }
+        }
+        if (count > 0)
+        {
+            runs.add(writeRun(children, count));
+        }
+        return runs;
+    }
+
+    private File writeRun(long[] children, int count) throws IOException
+    {
+        Arrays.sort(children, 0, count);
+        File run = new File(workDirectory, "run-" + (runsWritten++) + ".bin");
+        try (LayerWriter writer = new LayerWriter(run))
+        {
+            for (int i = 0; i < count; i++)
+            {
+                if (i == 0 || children[i] != children[i - 1])
+                {
+                    writer.write(children[i]);
+                }
+            }
+        }
+        return run;
+    }
+
+    /**
+     * merges the runs into the next layer, dropping boards that appear more
+     * than once or are already in the previous or current layer.
+     * @return the number of boards written to the next layer.
+     */
+    private long mergeRuns(ArrayList<File> runs, File previous, File current, File next) throws IOException
+    {
+        PriorityQueue<LayerReader> heads = new PriorityQueue<>((a, b) -> Long.compare(a.peek(), b.peek()));
+        ArrayList<LayerReader> opened = new ArrayList<>();
+        try (LayerWriter writer = new LayerWriter(next))
+        {
+            for (File run : runs)
+            {
+                LayerReader reader = new LayerReader(run);
+                opened.add(reader);
+                if (reader.hasNext())
+                {
+                    heads.add(reader);
+                }
+            }
+            LayerReader previousLayer = (previous != null) ? new LayerReader(previous) : null;
+            LayerReader currentLayer = new LayerReader(current);
+            if (previousLayer != null)
+            {
+                opened.add(previousLayer);
+            }
+            opened.add(currentLayer);
+
+            boolean any = false;
+            long last = 0;
+            while (!heads.isEmpty())
+            {
+                LayerReader reader = heads.poll();
+                long state = reader.next();
+                if (reader.hasNext())
+                {
+                    heads.add(reader);
+                }
+                if (any && state == last)
+                {
+                    continue;
+                }
+                any = true;
+                last = state;
+
+                if (!contains(previousLayer, state) && !contains(currentLayer, state))
+                {
+                    writer.write(state);
+                }
+            }
+            return writer.getCount();
+        } finally
+        {
+            for (LayerReader reader : opened)
+            {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * advances a sorted layer up to {@code state}; the states asked about
+     * must come in increasing order.
+     */
+    private static boolean contains(LayerReader layer, long state)
+    {
+        if (layer == null)
+        {
+            return false;
+        }
+        while (layer.hasNext() && layer.peek() < state)
+        {
+            layer.next();
+        }
+        return layer.hasNext() && layer.peek() == state;
+    }
+
+    public File layerFile(int depth)
+    {
+        return new File(workDirectory, String.format("layer-%03d.bin", depth));
+    }
+
+    private void delete(File file)
+    {
+        long length = file.length();
+        if (file.delete())
+        {
+            diskBytesInUse -= length;
+        }
+    }
+
+    public long getPeakDiskBytes()
+    {
+        return peakDiskBytes;
+    }
+
+    /**
+     * @return total time spent writing checkpoints, to compare with the search time.
+     */
+    public long getCheckpointMillis()
+    {
+        return checkpointNanos / 1000000;
+    }
+
+    /**
+     * records the finished layers.  written to a temporary file first and
+     * then moved over the old checkpoint, so there is always a whole one.
+     */
+    private void writeCheckpoint() throws IOException
+    {
+        long started = System.nanoTime();
+        File temporary = new File(workDirectory, CHECKPOINT_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary))))
+        {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeLong(startState);
+            out.writeBoolean(keepLayers);
+            out.writeInt(runsWritten);
+            out.writeLong(diskBytesInUse);
+            out.writeLong(peakDiskBytes);
+            out.writeInt(layerSizes.size());
+            for (long size : layerSizes)
+            {
+                out.writeLong(size);
+            }
+        }
+        Files.move(temporary.toPath(), new File(workDirectory, CHECKPOINT_NAME).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointNanos += System.nanoTime() - started;
+    }
+
+    /**
+     * sorted packed boards written to a file as big-endian longs, counting
+     * against the disk budget.
+     */
+    private class LayerWriter implements AutoCloseable {
+        private DataOutputStream out;
+        private long count = 0;
+
+        LayerWriter(File file) throws IOException
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), WRITE_BUFFER_BYTES));
+        }
+
+        void write(long state) throws IOException
+        {
+            diskBytesInUse += 8;
+            peakDiskBytes = Math.max(peakDiskBytes, diskBytesInUse);
+            if (diskBytesInUse > diskBudgetBytes)
+            {
+                out.close();
+                throw new IOException("Disk budget of " + diskBudgetBytes + " bytes exceeded");
+            }
+            out.writeLong(state);
+            count++;
+        }
+
+        long getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * reads a file written by {@code LayerWriter} through memory maps of at
+     * most {@code MAP_CHUNK_BYTES} at a time.
+     */
+    private static class LayerReader implements AutoCloseable {
+        private FileChannel channel;
+        private long fileLength;
+        private long chunkStart = 0;
+        private MappedByteBuffer chunk;
+
+        LayerReader(File file) throws IOException
+        {
+            channel = new RandomAccessFile(file, "r").getChannel();
+            fileLength = channel.size();
+            mapChunk();
+        }
+
+        private void mapChunk() throws IOException
+        {
+            long length = Math.min(MAP_CHUNK_BYTES, fileLength - chunkStart);
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, length);
+        }
+
+        boolean hasNext()
+        {
+            return chunkStart + chunk.position() < fileLength;
+        }
+
+        long peek()
+        {
+            if (!chunk.hasRemaining())
+            {
+                nextChunk();
+            }
+            return chunk.getLong(chunk.position());
+        }
+
+        long next()
+        {
+            if (!chunk.hasRemaining())
+            {
+                nextChunk();
+            }
+            return chunk.getLong();
+        }
+
+        private void nextChunk()
+        {
+            chunkStart += chunk.capacity();
+            try
+            {
+                mapChunk();
+            } catch (IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Fringe Search with the Manhattan Tile heuristic.  Like IDA* it works in
+ *  passes with a rising f(n) threshold, but it keeps the fringe (the leaves
+ *  of the tree searched so far) in a linked list between passes, so the
+ *  interior of the tree is never expanded again.  Each pass walks the list
+ *  once: a state within the threshold is expanded, its children are linked
+ *  in right behind it so they are visited later in the same pass ("now"),
+ *  and it leaves the list; a state over the threshold stays where it is for
+ *  the next pass ("later").  There is no priority queue to keep sorted.
+ *
+ *  Every state generated is one slot in a set of primitive arrays (packed
+ *  board, parent, depth, heuristic, list links), with an open-addressing
+ *  hash index from board to slot, so a pass walks plain arrays.  Boards are
+ *  {@code PackedBoard} longs, so any board of up to 16 squares works;
+ *  {@code runSearch} adapts it to the {@code Puzzle} based searches.
+ */
+public class FringeSearch {
+
+    private static final int INITIAL_NODES = 1 << 12;
+    private static final int NONE = -1;
+
+    private int width;
+    private int height;
+    private int size;
+    private long goalState;
+    private BatchHeuristic manhattan;
+    private ExpansionTrace trace = null;
+    private Utility statistics;
+
+    private long[] states = new long[INITIAL_NODES];
+    private int[] parents = new int[INITIAL_NODES];
+    private short[] depths = new short[INITIAL_NODES];
+    private byte[] estimates = new byte[INITIAL_NODES];
+    private int[] next = new int[INITIAL_NODES];
+    private int[] previous = new int[INITIAL_NODES];
+    private boolean[] inFringe = new boolean[INITIAL_NODES];
+    private int nodeCount = 0;
+    private int[] index = new int[INITIAL_NODES * 2];     //slot + 1, 0 = empty.
+    private int indexMask = INITIAL_NODES * 2 - 1;
+
+    private int head = NONE;
+    private int fringeSize = 0;
+    private int passes = 0;
+
+    /**
+     * @param width number of squares per row.
+     * @param height number of rows; width * height may be at most 16.
+     * @param goal the goal board by position index, 0 for the blank.
+     * @param statistics receives the performance stats.
+     */
+    public FringeSearch(int width, int height, int[] goal, Utility statistics)
+    {
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.statistics = statistics;
+        goalState = PackedBoard.pack(goal);
+        manhattan = new BatchHeuristic(width, height, goal, BatchHeuristic.MANHATTAN);
+    }
+
+    /**
+     * {@code Utility.runSearch} for Fringe Search: runs the search on the
+     * packed form of {@code initState} and replays the moves found back into
+     * {@code Puzzle}s.
+     * @return the solution path in start-to-goal order, or null if there is none or the thread was interrupted.
+     */
+    public static ArrayList<Puzzle> runSearch(Puzzle initState, Utility statistics, boolean saveToDisk)
+    {
+        FringeSearch search = new FringeSearch(3, 3, initState.getGoalNumbers(), statistics);
+        MoveSequence moves = search.search(initState.getCurrentNumbers());
+        if (moves == null)
+        {
+            return null;
+        }
+        ArrayList<Puzzle> solutionList = moves.replay(initState);
+        statistics.reportSolution(solutionList, saveToDisk);
+        return solutionList;
+    }
+
+    /**
+     * @param start the start board by position index, 0 for the blank.
+     * @return the moves of a shortest solution, or null if there is none or the thread was interrupted.
+     */
+    public MoveSequence search(int[] start)
+    {
+        long startState = PackedBoard.pack(start);
+        int threshold = manhattan.estimate(startState);
+        int root = addNode(startState, NONE, 0, threshold);
+        link(root, NONE);
+        int[] targets = new int[4];
+        int visited = 0;
+
+        while (head != NONE)
+        {
+            int nextThreshold = Integer.MAX_VALUE;
+            int node = head;
+            while (node != NONE)
+            {
+                if (++visited % 4096 == 0 && Thread.currentThread().isInterrupted())
+                {
+                    return null;
+                }
+                int depth = depths[node];
+                int f = depth + estimates[node];
+                if (f > threshold)
+                {
+                    //later: stays on the fringe for the next pass.
+                    nextThreshold = Math.min(nextThreshold, f);
+                    node = next[node];
+                    continue;
+                }
+
+                long state = states[node];
+                if (trace != null)
+                {
+                    trace.record(state, depth, estimates[node], node, parents[node]);
+                }
+                if (state == goalState)
+                {
+                    return buildMoves(node);
+                }
+
+                //now: children go right behind this state, in reverse so they are visited in move order.
+                int blank = PackedBoard.blankPosition(state, size);
+                int moves = PackedBoard.neighbours(blank, width, height, targets);
+                for (int i = moves - 1; i >= 0; i--)
+                {
+                    long child = PackedBoard.slide(state, blank, targets[i]);
+                    int childDepth = depth + 1;
+                    statistics.addToNodesExpanded();
+
+                    int existing = find(child);
+                    if (existing >= 0)
+                    {
+                        if (depths[existing] <= childDepth)
+                        {
+                            statistics.addToDuplicatesPruned();
+                            continue;
+                        }
+                        //a shorter path to a known board: move it here with its new depth.
+                        if (inFringe[existing])
+                        {
+                            unlink(existing);
+                        } else
+                        {
+                            statistics.addToNodesReopened();
+                        }
+                        parents[existing] = node;
+                        depths[existing] = (short) childDepth;
+                        link(existing, node);
+                    } else
+                    {
+                        int childEstimate = manhattan.childEstimate(state, estimates[node], blank, targets[i]);
+                        link(addNode(child, node, childDepth, childEstimate), node);
+                    }
+                    statistics.setTreeDepth(childDepth);
+                }
+
+                int following = next[node];
+                unlink(node);
+                node = following;
+                statistics.updateFrontierListLength(fringeSize);
+            }
+            statistics.updateClosedListLength(nodeCount - fringeSize);
+            threshold = nextThreshold;
+            passes++;
+        }
+        return null;
+    }
+
+    /**
+     * @param trace receives every expansion from now on, null for none.
+     */
+    public void setTrace(ExpansionTrace trace)
+    {
+        this.trace = trace;
+    }
+
+    /**
+     * @return the number of passes over the fringe the last search made.
+     */
+    public int getPasses()
+    {
+        return passes;
+    }
+
+    private MoveSequence buildMoves(int goalNode)
+    {
+        return PackedBoard.movesAlong(goalNode, node -> parents[node], node -> states[node], width, size);
+    }
+
+    // ---- fringe list -----------------------------------------------------
+
+    /**
+     * puts a slot on the fringe right after {@code after}, or at the head if that is NONE.
+     */
+    private void link(int node, int after)
+    {
+        int following = (after == NONE) ? head : next[after];
+        previous[node] = after;
+        next[node] = following;
+        if (after == NONE)
+        {
+            head = node;
+        } else
+        {
+            next[after] = node;
+        }
+        if (following != NONE)
+        {
+            previous[following] = node;
+        }
+        inFringe[node] = true;
+        fringeSize++;
+    }
+
+    private void unlink(int node)
+    {
+        if (previous[node] == NONE)
+        {
+            head = next[node];
+        } else
+        {
+            next[previous[node]] = next[node];
+        }
+        if (next[node] != NONE)
+        {
+            previous[next[node]] = previous[node];
+        }
+        inFringe[node] = false;
+        fringeSize--;
+    }
+
+    // ---- slots -----------------------------------------------------------
+
+    private int addNode(long state, int parent, int depth, int estimate)
+    {
+        if (nodeCount == states.length)
+        {
+            int capacity = states.length * 2;
+            states = Arrays.copyOf(states, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            estimates = Arrays.copyOf(estimates, capacity);
+            next = Arrays.copyOf(next, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            inFringe = Arrays.copyOf(inFringe, capacity);
+        }
+        int node = nodeCount++;
+        states[node] = state;
+        parents[node] = parent;
+        depths[node] = (short) depth;
+        estimates[node] = (byte) estimate;
+
+        //keep the index at most half full.
+        if (nodeCount * 2 > index.length)
+        {
+            index = new int[index.length * 2];
+            indexMask = index.length - 1;
+            for (int i = 0; i < node; i++)
+            {
+                placeInIndex(states[i], i);
+            }
+        }
+        placeInIndex(state, node);
+        return node;
+    }
+
+    private int find(long state)
+    {
+        for (int slot = PackedBoard.hash(state) & indexMask; ; slot = (slot + 1) & indexMask)
+        {
+            int entry = index[slot];
+            if (entry == 0)
+            {
+                return -1;
+            }
+            if (states[entry - 1] == state)
+            {
+                return entry - 1;
+            }
+        }
+    }
+
+    private void placeInIndex(long state, int node)
+    {
+        int slot = PackedBoard.hash(state) & indexMask;
+        while (index[slot] != 0)
+        {
+            slot = (slot + 1) & indexMask;
+        }
+        index[slot] = node + 1;
+    }
+}
@@ -0,0 +1,454 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Keeps, for each goal board seen, the tree a backward Breadth Search from
+ *  that goal has explored so far: every packed board within some radius D of
+ *  the goal together with its distance to it.  Since a move can always be
+ *  undone, those are the distances forward from the boards to the goal too.
+ *  Start boards are then answered, from the cheapest way to the dearest:
+ *
+ *  1. the start is in the tree: the path is read off the tree by stepping to
+ *     a neighbour one closer to the goal each time.
+ *  2. a short forward Breadth Search from the start meets the tree.  Every
+ *     board within D of the goal is in the tree, so once the forward search
+ *     has finished depth d, no path it has not found yet is shorter than
+ *     d + 1 + D; the best meeting point found is exact as soon as it is no
+ *     longer than that.
+ *  3. the tree is grown a layer at a time until it holds the start.
+ *
+ *  All trees together hold at most {@code maxStates} boards; when growing
+ *  one would go over, the least recently used other trees are dropped, and
+ *  if that is still not enough the query falls back to a plain A* search.
+ *  With {@code setMemoryBudget} the trees are also a standing reservation
+ *  on the budget, a map entry's worth of bytes per board: a layer is only
+ *  grown if the budget has room for it, after dropping other trees if
+ *  need be, so a cache shared by all requests cannot take the memory the
+ *  searches were promised.
+ *
+ *  Boards are {@code PackedBoard} longs, so any board of up to 16 squares
+ *  works.  One cache can serve several worker threads: each tree has a
+ *  read-write lock, so queries for the same goal read it together and only
+ *  wait while it grows, and the cache's own monitor is only held to look a
+ *  tree up and to count boards and bytes.  Queries for other goals never
+ *  wait for a tree to grow, and the A* fallback runs without any lock.
+ */
+public class GoalTreeCache {
+
+    private int width;
+    private int height;
+    private int size;
+    private long maxStates;
+    private int forwardDepth;
+
+    //by packed goal board; iteration runs from least to most recently used.
+    private LinkedHashMap<Long, GoalTree> trees = new LinkedHashMap<>(16, 0.75f, true);
+    private long statesHeld = 0;
+    private MemoryBudget.Account account = null;    //the trees' reservation, if there is a budget.
+
+    private AtomicLong treeHits = new AtomicLong();
+    private AtomicLong forwardHits = new AtomicLong();
+    private AtomicLong treeGrowths = new AtomicLong();
+    private AtomicLong fallbacks = new AtomicLong();
+    private long treesEvicted = 0;
+
+    /**
+     * the explored part of the backward search from one goal.
+     */
+    private static class GoalTree {
+        HashMap<Long, Byte> distance = new HashMap<>();    //read as unsigned, up to 255.
+        long[] frontier;    //the boards at distance radius, whose children are not explored yet.
+        int radius = 0;
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();     //read to look boards up, write to grow.
+
+        //guarded by the cache: boards counted in statesHeld, queries using the tree, and whether it was dropped.
+        long held = 1;
+        int users = 0;
+        boolean dropped = false;
+
+        GoalTree(long goal)
+        {
+            distance.put(goal, (byte) 0);
+            frontier = new long[] {goal};
+        }
+
+        boolean isComplete()
+        {
+            return frontier.length == 0;
+        }
+    }
+
+    /**
+     * @param width number of squares per row.
+     * @param height number of rows; width * height may be at most 16.
+     * @param maxStates the most boards all the trees may hold together.
+     * @param forwardDepth the deepest the forward search from a start goes before the tree is grown instead.
+     */
+    public GoalTreeCache(int width, int height, long maxStates, int forwardDepth)
+    {
+        if (width * height > PackedBoard.MAX_SQUARES)
+        {
+            throw new IllegalArgumentException("Board must have at most " + PackedBoard.MAX_SQUARES + " squares");
+        }
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.maxStates = maxStates;
+        this.forwardDepth = forwardDepth;
+    }
+
+    /**
+     * reserves the memory of the trees from {@code budget} from now on,
+     * dropping the trees held so far.
+     * @param budget the budget, or null to stop reserving.
+     */
+    public synchronized void setMemoryBudget(MemoryBudget budget)
+    {
+        if (account != null)
+        {
+            account.close();
+        }
+        account = (budget == null) ? null : budget.openStanding();
+        for (GoalTree tree : trees.values())
+        {
+            tree.dropped = true;    //queries still using it stop growing it.
+        }
+        trees.clear();
+        statesHeld = 0;
+    }
+
+    /**
+     * @return the bytes the trees hold in the memory budget, 0 without one.
+     */
+    public synchronized long getReservedBytes()
+    {
+        return (account == null) ? 0 : account.getHeldBytes();
+    }
+
+    /**
+     * @param start the start board by position index, 0 for the blank.
+     * @param goal the goal board by position index, 0 for the blank.
+     * @return the moves of a shortest solution, or null if the goal cannot be reached.
+     */
+    public MoveSequence solve(int[] start, int[] goal)
+    {
+        if (!Utility.isSolvable(start, goal, width))
+        {
+            return null;
+        }
+        long startState = PackedBoard.pack(start);
+        GoalTree tree = checkOut(PackedBoard.pack(goal));
+        MoveSequence moves;
+        boolean complete;
+        try
+        {
+            tree.lock.readLock().lock();
+            try
+            {
+                if (tree.distance.containsKey(startState))
+                {
+                    treeHits.incrementAndGet();
+                    return readTree(tree, startState, new MoveSequence());
+                }
+                moves = searchForward(tree, startState);
+            } finally
+            {
+                tree.lock.readLock().unlock();
+            }
+            if (moves != null)
+            {
+                forwardHits.incrementAndGet();
+                return moves;
+            }
+
+            tree.lock.writeLock().lock();
+            try
+            {
+                moves = growUntilFound(tree, startState);
+                complete = tree.isComplete();
+            } finally
+            {
+                tree.lock.writeLock().unlock();
+            }
+        } finally
+        {
+            checkIn(tree);
+        }
+        if (moves != null)
+        {
+            treeGrowths.incrementAndGet();
+            return moves;
+        }
+        if (complete)
+        {
+            return null;    //the whole reachable space is in the tree, and the start is not.
+        }
+
+        fallbacks.incrementAndGet();
+        OffHeapAStar search = new OffHeapAStar(width, height, goal, OffHeapAStar.MANHATTAN, new Utility(4));
+        return search.search(start);
+    }
+
+    /**
+     * looks up the tree for a goal, starting one if there is none, and
+     * marks it as in use so that it is not dropped under the query.
+     */
+    private synchronized GoalTree checkOut(long goalState)
+    {
+        GoalTree tree = trees.get(goalState);
+        if (tree == null)
+        {
+            tree = new GoalTree(goalState);
+            trees.put(goalState, tree);
+            statesHeld += 1;
+        }
+        tree.users++;
+        return tree;
+    }
+
+    private synchronized void checkIn(GoalTree tree)
+    {
+        tree.users--;
+    }
+
+    /**
+     * grows the tree a layer at a time until it holds the start, it is
+     * complete, or there is no room for the next layer.  call with the
+     * tree's write lock held.
+     * @return the moves read off the tree, or null if it does not hold the start.
+     */
+    private MoveSequence growUntilFound(GoalTree tree, long startState)
+    {
+        while (!tree.distance.containsKey(startState) && !tree.isComplete())
+        {
+            //each board of the frontier adds at most 4 new boards.
+            long needed = (long) tree.frontier.length * 4;
+            if (!reserve(tree, needed))
+            {
+                break;
+            }
+            settle(tree, needed, growTree(tree));
+        }
+        if (tree.distance.containsKey(startState))
+        {
+            return readTree(tree, startState, new MoveSequence());
+        }
+        return null;
+    }
+
+    /**
+     * counts {@code states} more boards for {@code keep}, within the cap and
+     * the memory budget, dropping the other trees if there is not enough room.
+     * @return false if there is still not enough, or the tree was dropped.
+     */
+    private synchronized boolean reserve(GoalTree keep, long states)
+    {
+        if (keep.dropped)
+        {
+            return false;
+        }
+        evictOthers(keep, maxStates - states);
+        if (statesHeld + states > maxStates)
+        {
+            return false;
+        }
+        if (account != null)
+        {
+            long bytes = states * Utility.MAP_ENTRY_BYTES;
+            if (!account.reserve(bytes))
+            {
+                evictOthers(keep, 0);
+                boolean reserved = account.reserve(bytes);
+                account.clearOverBudget();      //the cache is not a search; nothing was stopped.
+                if (!reserved)
+                {
+                    return false;
+                }
+            }
+        }
+        statesHeld += states;
+        keep.held += states;
+        return true;
+    }
+
+    /**
+     * gives back the part of a reservation a layer did not use.
+     */
+    private synchronized void settle(GoalTree tree, long reserved, long added)
+    {
+        if (tree.dropped)
+        {
+            return;     //setMemoryBudget has let go of all of it already.
+        }
+        statesHeld -= reserved - added;
+        tree.held -= reserved - added;
+        if (account != null)
+        {
+            account.release((reserved - added) * Utility.MAP_ENTRY_BYTES);
+        }
+    }
+
+    /**
+     * adds the next layer of the backward search to the tree.  call with
+     * the tree's write lock held.
+     * @return the number of boards added.
+     */
+    private int growTree(GoalTree tree)
+    {
+        long[] next = new long[tree.frontier.length * 4];
+        int count = 0;
+        int[] targets = new int[4];
+        byte childDistance = (byte) (tree.radius + 1);
+        for (long state : tree.frontier)
+        {
+            int blank = PackedBoard.blankPosition(state, size);
+            int moves = PackedBoard.neighbours(blank, width, height, targets);
+            for (int i = 0; i < moves; i++)
+            {
+                long child = PackedBoard.slide(state, blank, targets[i]);
+                if (tree.distance.putIfAbsent(child, childDistance) == null)
+                {
+                    next[count++] = child;
+                }
+            }
+        }
+        tree.frontier = Arrays.copyOf(next, count);
+        tree.radius++;
+        return count;
+    }
+
+    /**
+     * follows the tree from {@code state} down to the goal, stepping each
+     * time to a neighbour one closer.  call with either of the tree's locks held.
+     * @param moves the moves so far, which the rest of the path is added to.
+     */
+    private MoveSequence readTree(GoalTree tree, long state, MoveSequence moves)
+    {
+        int[] targets = new int[4];
+        int distance = tree.distance.get(state) & 0xff;
+        while (distance > 0)
+        {
+            int blank = PackedBoard.blankPosition(state, size);
+            int count = PackedBoard.neighbours(blank, width, height, targets);
+            for (int i = 0; i < count; i++)
+            {
+                long child = PackedBoard.slide(state, blank, targets[i]);
+                Byte childDistance = tree.distance.get(child);
+                if (childDistance != null && (childDistance & 0xff) == distance - 1)
+                {
+                    moves.add(MoveSequence.directionOf(targets[i] - blank, width));
+                    state = child;
+                    distance--;
+                    break;
+                }
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Breadth Search forward from the start until it meets the tree at a
+     * point that is provably on a shortest path, or {@code forwardDepth} is
+     * used up.  call with either of the tree's locks held.
+     * @return the full solution, or null if the forward search gave up.
+     */
+    private MoveSequence searchForward(GoalTree tree, long startState)
+    {
+        //direction the blank moved to reach each state; -1 for the start.
+        HashMap<Long, Byte> cameFrom = new HashMap<>();
+        cameFrom.put(startState, (byte) -1);
+        ArrayDeque<Long> layer = new ArrayDeque<>();
+        layer.add(startState);
+        int[] targets = new int[4];
+        long bestMeeting = 0;
+        int bestLength = Integer.MAX_VALUE;
+
+        for (int depth = 0; depth < forwardDepth && !layer.isEmpty(); depth++)
+        {
+            ArrayDeque<Long> nextLayer = new ArrayDeque<>();
+            for (long state : layer)
+            {
+                int blank = PackedBoard.blankPosition(state, size);
+                int moves = PackedBoard.neighbours(blank, width, height, targets);
+                for (int i = 0; i < moves; i++)
+                {
+                    long child = PackedBoard.slide(state, blank, targets[i]);
+                    if (cameFrom.containsKey(child))
+                    {
+                        continue;
+                    }
+                    cameFrom.put(child, (byte) MoveSequence.directionOf(targets[i] - blank, width));
+                    nextLayer.add(child);
+
+                    Byte distance = tree.distance.get(child);
+                    if (distance != null && depth + 1 + (distance & 0xff) < bestLength)
+                    {
+                        bestLength = depth + 1 + (distance & 0xff);
+                        bestMeeting = child;
+                    }
+                }
+            }
+            layer = nextLayer;
+
+            //anything not found yet is at least this long.
+            if (bestLength <= depth + 2 + tree.radius)
+            {
+                MoveSequence moves = MoveSequence.fromCameFrom(bestMeeting, cameFrom, width, size);
+                return readTree(tree, bestMeeting, moves);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * drops least recently used trees other than {@code keep} and those in
+     * use until at most {@code target} boards are held, or none is left to
+     * drop.  call with the cache's monitor held.
+     */
+    private void evictOthers(GoalTree keep, long target)
+    {
+        Iterator<GoalTree> oldest = trees.values().iterator();
+        while (statesHeld > target && oldest.hasNext())
+        {
+            GoalTree tree = oldest.next();
+            if (tree != keep && tree.users == 0)
+            {
+                statesHeld -= tree.held;
+                if (account != null)
+                {
+                    //the goal itself was never reserved.
+                    account.release((tree.held - 1) * Utility.MAP_ENTRY_BYTES);
+                }
+                tree.dropped = true;
+                oldest.remove();
+                treesEvicted++;
+            }
+        }
+    }
+
+    /**
+     * @return the number of boards held by all the trees.
+     */
+    public synchronized long getStatesHeld()
+    {
+        return statesHeld;
+    }
+
+    /**
+     * @return how many queries, in order: were answered from a tree alone,
+     * by a forward search meeting a tree, by growing a tree, and by falling
+     * back to A*; then how many trees were dropped to stay within the cap.
+     */
+    public synchronized long[] getCounts()
+    {
+        return new long[] {treeHits.get(), forwardHits.get(), treeGrowths.get(), fallbacks.get(), treesEvicted};
+    }
+}
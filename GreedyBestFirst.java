@@ -40,4 +40,13 @@ public class GreedyBestFirst {
         solutionList = Utility.runSearch(currentState, statisticsGatherer, saveToDisk);
         return solutionList;
     }
+
+    /**
+     * @return the performance stats of the last {@code Search()}; the ASCII
+     * report is only drawn when saving to disk.
+     */
+    public Utility getStatistics()
+    {
+        return statisticsGatherer;
+    }
 }
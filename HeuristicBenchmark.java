@@ -0,0 +1,168 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Times the ways of making the children of a batch of 3x3 boards and
+ *  their Manhattan distance:
+ *
+ *      java HeuristicBenchmark [batch size] [rounds]
+ *
+ *      puzzle       Utility.createChild and the Puzzle's own heuristic, as
+ *                   the searches did before BatchHeuristic
+ *      scalar       packed children, distance summed tile by tile
+ *      batch        packed children, distance from BatchHeuristic's table
+ *      incremental  BatchHeuristic.expand, each child's distance from its parent's
+ *
+ *  The batch is the same random boards for every way, and each way is run
+ *  a few rounds untimed first so the JIT has compiled it.  The fastest
+ *  round is reported, in nanoseconds per child, with a checksum of the
+ *  distances so the ways can be seen to agree.
+ */
+public class HeuristicBenchmark {
+
+    private static final int WIDTH = 3;
+    private static final int SIZE = WIDTH * WIDTH;
+    private static final int[] GOAL = {1, 2, 3, 4, 5, 6, 7, 8, 0};
+    private static final int WARMUP_ROUNDS = 10;
+
+    private static long[] parents;
+    private static int[] parentEstimates;
+    private static ArrayList<Puzzle> parentPuzzles = new ArrayList<>();
+    private static BatchHeuristic batch = new BatchHeuristic(WIDTH, WIDTH, GOAL, BatchHeuristic.MANHATTAN);
+
+    public static void main(String[] args)
+    {
+        int batchSize = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+        //random boards, each a random walk from the goal.
+        Random random = new Random(1);
+        parents = new long[batchSize];
+        parentEstimates = new int[batchSize];
+        int[] targets = new int[4];
+        for (int i = 0; i < batchSize; i++)
+        {
+            int[] numbers = GOAL.clone();
+            int blank = SIZE - 1;
+            for (int step = 0; step < 40; step++)
+            {
+                int target = targets[random.nextInt(PackedBoard.neighbours(blank, WIDTH, WIDTH, targets))];
+                numbers[blank] = numbers[target];
+                numbers[target] = 0;
+                blank = target;
+            }
+            parents[i] = PackedBoard.pack(numbers);
+            parentEstimates[i] = batch.estimate(parents[i]);
+            parentPuzzles.add(Utility.createPuzzle(numbers, GOAL));
+        }
+
+        System.out.println(batchSize + " boards, best of " + rounds + " rounds");
+        System.out.println("  method      |  ns/child |  checksum");
+        String[] methods = {"puzzle", "scalar", "batch", "incremental"};
+        for (String method : methods)
+        {
+            for (int round = 0; round < WARMUP_ROUNDS; round++)
+            {
+                run(method);
+            }
+            long best = Long.MAX_VALUE;
+            long checksum = 0;
+            int children = 0;
+            for (int round = 0; round < rounds; round++)
+            {
+                long began = System.nanoTime();
+                long[] result = run(method);
+                best = Math.min(best, System.nanoTime() - began);
+                checksum = result[0];
+                children = (int) result[1];
+            }
+            System.out.println(String.format("  %-11s | %9.1f | %9d", method, (double) best / children, checksum));
+        }
+    }
+
+    /**
+     * makes every child of the batch one way.
+     * @return the sum of the children's distances and the number of children.
+     */
+    private static long[] run(String method)
+    {
+        long sum = 0;
+        int made = 0;
+        long[] children = new long[parents.length * 4];
+        int[] estimates = new int[children.length];
+        int[] parentOf = new int[children.length];
+        switch (method)
+        {
+            case "puzzle":
+                for (Puzzle parent : parentPuzzles)
+                {
+                    for (int move : parent.getBlankSquare().getMoves())
+                    {
+                        sum += Utility.createChild(parent, move).getPathCostManhattan();
+                        made++;
+                    }
+                }
+                break;
+            case "scalar":
+                made = packedChildren(children);
+                for (int i = 0; i < made; i++)
+                {
+                    sum += scalarManhattan(children[i]);
+                }
+                break;
+            case "batch":
+                made = packedChildren(children);
+                batch.estimate(children, made, estimates);
+                for (int i = 0; i < made; i++)
+                {
+                    sum += estimates[i];
+                }
+                break;
+            default:
+                made = batch.expand(parents, parentEstimates, parents.length, children, estimates, parentOf);
+                for (int i = 0; i < made; i++)
+                {
+                    sum += estimates[i];
+                }
+        }
+        return new long[]{sum, made};
+    }
+
+    private static int packedChildren(long[] children)
+    {
+        int[] targets = new int[4];
+        int made = 0;
+        for (long state : parents)
+        {
+            int blank = PackedBoard.blankPosition(state, SIZE);
+            int moves = PackedBoard.neighbours(blank, WIDTH, WIDTH, targets);
+            for (int m = 0; m < moves; m++)
+            {
+                children[made++] = PackedBoard.slide(state, blank, targets[m]);
+            }
+        }
+        return made;
+    }
+
+    /**
+     * the Manhattan distance to GOAL worked out tile by tile, where tile t
+     * belongs on square t - 1.
+     */
+    private static int scalarManhattan(long state)
+    {
+        int distance = 0;
+        for (int square = 0; square < SIZE; square++)
+        {
+            int tile = PackedBoard.get(state, square);
+            if (tile != 0)
+            {
+                int goalSquare = tile - 1;
+                distance += Math.abs(square / WIDTH - goalSquare / WIDTH) + Math.abs(square % WIDTH - goalSquare % WIDTH);
+            }
+        }
+        return distance;
+    }
+}
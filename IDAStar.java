@@ -0,0 +1,311 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Iterative Deepening A* with the Manhattan heuristic.  Runs repeated
+ *  depth-first searches, each cut off at a threshold on f(n) = g(n) + h(n)
+ *  that is raised to the lowest f(n) that exceeded it in the previous pass.
+ *  Only the current path is kept in memory, so it never runs out of memory
+ *  the way the list-based searches in {@code Utility.runSearch} can.
+ *
+ *  A long search can write checkpoints to disk and be continued from the
+ *  last one with {@code resume}.  A checkpoint is small, a few dozen bytes:
+ *  the start and goal boards, the threshold, the moves of the current path
+ *  (two bits each, see {@code MoveSequence}) and the next move to try at
+ *  every depth.
+ */
+public class IDAStar {
+
+    private static final int FOUND = -1;
+    private static final int CANCELLED = -2;
+    static final int CHECKPOINT_MAGIC = 0x49444131;    //"IDA1"
+    private static final int CHECK_CLOCK_EVERY = 4096;        //nodes between looks at the clock.
+
+    private Puzzle currentState;
+    private Puzzle goalState = null;
+    private ArrayList<Puzzle> solutionList = new ArrayList<>();
+    private Utility statisticsGatherer;
+    private boolean saveToDisk = true;
+
+    //the pass in progress; kept in fields so a checkpoint can capture it.
+    private int threshold = -1;
+    private int nextThreshold;
+    private ArrayList<Puzzle> path = null;
+    private ArrayList<Integer> nextMoveIndex;
+
+    private File checkpointFile = null;
+    private long checkpointIntervalNanos;
+    private long lastCheckpoint;
+    private long checkpointNanos = 0;
+    private int checkpointsWritten = 0;
+
+    /**
+     * Takes an initial gamestate and finds solution to goal by IDA* search.
+     * @param initState initial board state; Puzzle objects keep their own reference to goal state
+     * @param saveToDisk convenience flag to turn on/off saving search results to disk.
+     */
+    public IDAStar(Puzzle initState, boolean saveToDisk)
+    {
+        currentState = initState;
+        this.saveToDisk = saveToDisk;
+        statisticsGatherer = new Utility(7);
+    }
+
+    /**
+    Runs the given search method and returns the solution path in
+    an ArrayList, in order of first move to last move.  Returns null if the
+    thread running the search is interrupted.
+    */
+    public ArrayList<Puzzle> Search()
+    {
+        if (Utility.isGoalState(currentState))
+        {
+            goalState = currentState;
+        }
+
+        if (threshold < 0)
+        {
+            threshold = currentState.getPathCostManhattan();
+        }
+        lastCheckpoint = System.nanoTime();
+        while (goalState == null)
+        {
+            int result = boundedSearch();
+            if (result == CANCELLED || result == Integer.MAX_VALUE)
+            {
+                return null;
+            }
+            if (result != FOUND)
+            {
+                threshold = result;
+            }
+        }
+
+        solutionList = Utility.buildSolutionPath(goalState);
+        statisticsGatherer.reportSolution(solutionList, saveToDisk);
+        if (checkpointFile != null)
+        {
+            checkpointFile.delete();    //nothing left to resume.
+        }
+        return solutionList;
+    }
+
+    /**
+     * turns on checkpointing: while searching, the state of the search is
+     * written to {@code file} every {@code intervalMillis}, replacing the
+     * previous checkpoint.  the file is deleted once a solution is found.
+     */
+    public void setCheckpoint(File file, long intervalMillis)
+    {
+        checkpointFile = file;
+        checkpointIntervalNanos = intervalMillis * 1000000L;
+    }
+
+    /**
+     * continues a search from a checkpoint written by {@code setCheckpoint};
+     * call {@code Search()} on the result.  it keeps writing checkpoints to
+     * the same file at the given interval.
+     * @throws IOException if the file cannot be read or is not an IDA* checkpoint.
+     */
+    public static IDAStar resume(File file, long intervalMillis, boolean saveToDisk) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != CHECKPOINT_MAGIC)
+            {
+                throw new IOException(file + " is not an IDA* checkpoint");
+            }
+            int size = in.readUnsignedByte();
+            int[] start = new int[size];
+            int[] goal = new int[size];
+            for (int i = 0; i < size; i++)
+            {
+                start[i] = in.readUnsignedByte();
+            }
+            for (int i = 0; i < size; i++)
+            {
+                goal[i] = in.readUnsignedByte();
+            }
+
+            IDAStar search = new IDAStar(Utility.createPuzzle(start, goal), saveToDisk);
+            search.setCheckpoint(file, intervalMillis);
+            search.threshold = in.readInt();
+            search.nextThreshold = in.readInt();
+            search.statisticsGatherer.addToNodesExpanded(in.readInt());
+
+            int pathLength = in.readInt();
+            search.nextMoveIndex = new ArrayList<>();
+            for (int i = 0; i < pathLength; i++)
+            {
+                search.nextMoveIndex.add(in.readUnsignedByte());
+            }
+            byte[] moves = new byte[in.readInt()];
+            in.readFully(moves);
+            search.path = MoveSequence.fromBytes(moves).replay(search.currentState);
+            return search;
+        }
+    }
+
+    /**
+     * writes the pass in progress to a temporary file, then moves it over
+     * the checkpoint, so a crash while writing leaves the old one intact.
+     */
+    private void writeCheckpoint()
+    {
+        long started = System.nanoTime();
+        File temporary = new File(checkpointFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary))))
+        {
+            int[] start = currentState.getCurrentNumbers();
+            int[] goal = currentState.getGoalNumbers();
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeByte(start.length);
+            for (int number : start)
+            {
+                out.writeByte(number);
+            }
+            for (int number : goal)
+            {
+                out.writeByte(number);
+            }
+            out.writeInt(threshold);
+            out.writeInt(nextThreshold);
+            out.writeInt(statisticsGatherer.getTotalNodesExpanded());
+
+            out.writeInt(path.size());
+            for (int moveIndex : nextMoveIndex)
+            {
+                out.writeByte(moveIndex);
+            }
+            byte[] moves = MoveSequence.fromSolution(path, 3).toBytes();
+            out.writeInt(moves.length);
+            out.write(moves);
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+            return;
+        }
+        try
+        {
+            Files.move(temporary.toPath(), checkpointFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointsWritten++;
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        checkpointNanos += System.nanoTime() - started;
+        lastCheckpoint = System.nanoTime();
+    }
+
+    /**
+     * one depth-first pass that skips every child whose f(n) is above the threshold.
+     * the path is kept on an explicit stack along with the index of the next
+     * move to try from each state on it.
+     * a resumed search picks up the pass it was checkpointed in.
+     * @return FOUND, CANCELLED, or the lowest f(n) above the threshold (the next threshold).
+     */
+    private int boundedSearch()
+    {
+        if (path == null)
+        {
+            path = new ArrayList<>();
+            nextMoveIndex = new ArrayList<>();
+            path.add(currentState);
+            nextMoveIndex.add(0);
+            nextThreshold = Integer.MAX_VALUE;
+        }
+        int sinceClock = 0;
+
+        while (!path.isEmpty())
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                return CANCELLED;
+            }
+            if (checkpointFile != null && ++sinceClock == CHECK_CLOCK_EVERY)
+            {
+                sinceClock = 0;
+                if (System.nanoTime() - lastCheckpoint >= checkpointIntervalNanos)
+                {
+                    writeCheckpoint();
+                }
+            }
+
+            int top = path.size() - 1;
+            Puzzle gameState = path.get(top);
+            int[] moves = gameState.getBlankSquare().getMoves();
+            int moveIndex = nextMoveIndex.get(top);
+            if (moveIndex >= moves.length)
+            {
+                //every move from this state has been tried; backtrack.
+                path.remove(top);
+                nextMoveIndex.remove(top);
+                continue;
+            }
+            nextMoveIndex.set(top, moveIndex + 1);
+
+            Puzzle tempChild = Utility.createChild(gameState, moves[moveIndex]);
+            statisticsGatherer.addToNodesExpanded();
+
+            //never undo the move that led to this state.
+            if (top > 0 && Utility.isEqual(tempChild, path.get(top - 1)))
+            {
+                continue;
+            }
+
+            int cost = tempChild.getDepth() + tempChild.getPathCostManhattan();
+            if (cost > threshold)
+            {
+                nextThreshold = Math.min(nextThreshold, cost);
+                continue;
+            }
+            if (Utility.isGoalState(tempChild))
+            {
+                goalState = tempChild;
+                return FOUND;
+            }
+
+            path.add(tempChild);
+            nextMoveIndex.add(0);
+            statisticsGatherer.updateFrontierListLength(path);
+            statisticsGatherer.setTreeDepth(tempChild.getDepth());
+        }
+        path = null;
+        return nextThreshold;
+    }
+
+    public int getCheckpointsWritten()
+    {
+        return checkpointsWritten;
+    }
+
+    /**
+     * @return total time spent writing checkpoints, to compare with the search time.
+     */
+    public long getCheckpointMillis()
+    {
+        return checkpointNanos / 1000000;
+    }
+
+    /**
+     * @return the performance stats of the last {@code Search()}; the ASCII
+     * report is only drawn when saving to disk.
+     */
+    public Utility getStatistics()
+    {
+        return statisticsGatherer;
+    }
+}
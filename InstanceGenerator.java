@@ -0,0 +1,211 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Makes start boards for tests and benchmarks.  All choices come from one
+ *  {@code java.util.Random} seeded on construction, whose sequence is fixed
+ *  by the Java specification, so the same seed gives the same boards on any
+ *  machine.
+ *
+ *  {@code randomSolvable} gives a board drawn uniformly from all boards
+ *  that can reach the goal, for any width and height.  {@code atDepth} gives
+ *  a 3x3 board exactly a given number of moves from the goal, from
+ *  {@code EightPuzzleTable}.
+ *
+ *  {@code writeCorpus} writes a workload split into an easy, a medium and a
+ *  hard file by optimal solution length, one query per line in the same
+ *  JSON form as {@code SolveRequest}:
+ *
+ *      {"id": "3x3-hard-0007", "width": 3, "height": 3, "depth": 24, "start": [...], "goal": [...]}
+ *
+ *  On 3x3 the depths of a bucket are used in turn, so every depth is
+ *  equally covered.  Larger boards have no distance table; their boards are
+ *  random walks from the goal of a length aimed at the bucket, solved with
+ *  {@code OffHeapAStar} to find their depth, and kept if it falls in the
+ *  bucket, so they may have at most 16 squares.
+ */
+public class InstanceGenerator {
+
+    public static final String[] BUCKETS = {"easy", "medium", "hard"};
+
+    private static final int EIGHT_PUZZLE_DIAMETER = 31;    //longest shortest solution on 3x3.
+
+    private Random random;
+
+    public InstanceGenerator(long seed)
+    {
+        random = new Random(seed);
+    }
+
+    /**
+     * @return tiles 1 to width * height - 1 in reading order, blank last.
+     */
+    public static int[] standardGoal(int width, int height)
+    {
+        int[] goal = new int[width * height];
+        for (int i = 0; i < goal.length - 1; i++)
+        {
+            goal[i] = i + 1;
+        }
+        return goal;
+    }
+
+    /**
+     * shuffles the goal's numbers, then swaps two tiles if the shuffle cannot
+     * reach the goal.  that swap pairs every unsolvable board with exactly one
+     * solvable one, so the result is uniform over the solvable boards.
+     */
+    public int[] randomSolvable(int width, int height, int[] goal)
+    {
+        int[] board = goal.clone();
+        for (int i = board.length - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            int held = board[i];
+            board[i] = board[j];
+            board[j] = held;
+        }
+        if (!Utility.isSolvable(board, goal, width))
+        {
+            int first = (board[0] == 0) ? 1 : 0;
+            int second = (board[first + 1] == 0) ? first + 2 : first + 1;
+            int held = board[first];
+            board[first] = board[second];
+            board[second] = held;
+        }
+        return board;
+    }
+
+    /**
+     * @param depth number of moves of a shortest solution, 0-31.
+     * @return a 3x3 board exactly {@code depth} moves from {@code goal}, uniform among those.
+     */
+    public int[] atDepth(int depth, int[] goal)
+    {
+        return EightPuzzleTable.randomAtDepth(depth, goal, random);
+    }
+
+    /**
+     * @return the board reached by sliding the blank {@code moves} times from
+     * {@code goal}, never straight back.
+     */
+    public int[] randomWalk(int width, int height, int[] goal, int moves)
+    {
+        int[] board = goal.clone();
+        int blank = 0;
+        while (board[blank] != 0)
+        {
+            blank++;
+        }
+        int previous = -1;
+        int[] targets = new int[4];
+        for (int m = 0; m < moves; m++)
+        {
+            int count = PackedBoard.neighbours(blank, width, height, targets);
+            int target;
+            do
+            {
+                target = targets[random.nextInt(count)];
+            } while (target == previous && count > 1);
+            board[blank] = board[target];
+            board[target] = 0;
+            previous = blank;
+            blank = target;
+        }
+        return board;
+    }
+
+    /**
+     * @return the lowest and highest depth of each bucket, easy to hard.
+     * @param maxDepth the hardest depth wanted; for 3x3 at most 31.
+     */
+    public static int[][] bucketRanges(int maxDepth)
+    {
+        int third = Math.max(1, maxDepth / 3);
+        return new int[][] {{1, third}, {third + 1, 2 * third}, {2 * third + 1, maxDepth}};
+    }
+
+    /**
+     * writes corpus-WxH-easy.ndjson, -medium and -hard into {@code directory}.
+     * @param perBucket queries in each file.
+     * @param maxDepth the hardest depth wanted; 3x3 is capped at 31.
+     * @throws IllegalArgumentException if the board has more than 16 squares.
+     */
+    public void writeCorpus(File directory, int width, int height, int perBucket, int maxDepth) throws IOException
+    {
+        if (width * height > PackedBoard.MAX_SQUARES)
+        {
+            //checked before any file is made, so a failed run leaves nothing behind.
+            throw new IllegalArgumentException("A corpus board is measured with OffHeapAStar, which holds at most "
+                    + PackedBoard.MAX_SQUARES + " squares; " + width + "x" + height + " has " + width * height);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Cannot create " + directory);
+        }
+        boolean exact = (width == 3 && height == 3);
+        if (exact)
+        {
+            maxDepth = Math.min(maxDepth, EIGHT_PUZZLE_DIAMETER);
+        }
+        int[] goal = standardGoal(width, height);
+        int[][] ranges = bucketRanges(maxDepth);
+
+        for (int bucket = 0; bucket < BUCKETS.length; bucket++)
+        {
+            String name = width + "x" + height + "-" + BUCKETS[bucket];
+            int low = ranges[bucket][0];
+            int high = ranges[bucket][1];
+            try (PrintWriter out = new PrintWriter(new File(directory, "corpus-" + name + ".ndjson"), "UTF-8"))
+            {
+                for (int n = 0; n < perBucket; n++)
+                {
+                    int[] start;
+                    int depth;
+                    if (exact)
+                    {
+                        depth = low + n % (high - low + 1);
+                        start = atDepth(depth, goal);
+                    } else
+                    {
+                        do
+                        {
+                            //a random walk's optimal length is usually well under its length.
+                            start = randomWalk(width, height, goal, low + random.nextInt(2 * (high - low + 1) + low));
+                            MoveSequence moves = new OffHeapAStar(width, height, goal, OffHeapAStar.MANHATTAN,
+                                    new Utility(4)).search(start);
+                            depth = moves.length();
+                        } while (depth < low || depth > high);
+                    }
+                    out.println(String.format("{\"id\": \"%s-%04d\", \"width\": %d, \"height\": %d, \"depth\": %d,"
+                            + " \"start\": %s, \"goal\": %s}", name, n, width, height, depth,
+                            Arrays.toString(start), Arrays.toString(goal)));
+                }
+            }
+        }
+    }
+
+    /**
+     * reads back the queries of one corpus file, as the JSON lines.
+     */
+    public static ArrayList<String> readCorpus(File file) throws IOException
+    {
+        ArrayList<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath()))
+        {
+            if (!line.trim().isEmpty())
+            {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
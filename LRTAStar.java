@@ -0,0 +1,358 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Learning Real-Time A* (LRTA*) with the Manhattan Tile heuristic, for when
+ *  every move has to be given within a fixed time.  Each step explores only
+ *  the boards a few moves around the current one, raises the heuristic of
+ *  each explored board to one more than its best neighbour (working in from
+ *  the edge of the explored area), and commits to the one move towards the
+ *  neighbour that now looks closest.  The raised values are kept in a table
+ *  that lasts between steps (and between searches on the same object), so
+ *  the agent cannot circle the same boards forever: every visit makes them
+ *  look worse until it leaves.  The moves made are not the shortest
+ *  solution; they are the path the agent actually walked, loops included.
+ *
+ *  The cost of a step is bounded by the lookahead depth, which caps the
+ *  explored area at the boards within that many moves.  With a time slice
+ *  set, exploring also stops early enough that learning over the boards
+ *  found, at the average cost per board of the steps so far, still fits.
+ *  The learned table holds at most {@code maxLearned} boards; the least
+ *  recently used ones are dropped and go back to plain Manhattan distance.
+ *  A table much too small for the board can leave the agent circling, so
+ *  {@code search} gives up after a set number of moves.
+ *
+ *  Boards are {@code PackedBoard} longs, so any board of up to 16 squares
+ *  works; {@code runSearch} adapts it to the {@code Puzzle} based searches.
+ */
+public class LRTAStar {
+
+    private int width;
+    private int height;
+    private int size;
+    private long goalState;
+    private BatchHeuristic manhattan;
+    private int lookaheadDepth;
+    private int maxLearned;
+    private long stepSliceNanos = 0;    //0 for no time slice, only the depth.
+    private Utility statistics;
+
+    //learned heuristic by packed board; iteration runs from least to most recently used.
+    private LinkedHashMap<Long, Integer> learned = new LinkedHashMap<>(16, 0.75f, true);
+    private long learnedDropped = 0;
+    private long worstStepNanos = 0;
+    private long totalStepNanos = 0;
+    private int steps = 0;
+
+    //the boards of the current step's lookahead in the order found, with their distance from the root.
+    private long[] local = new long[256];
+    private int[] depths = new int[256];
+    private int[] values = new int[256];   //heuristic values being learned.
+    private int localCount = 0;
+    private int interiorCount = 0;
+    private double learnNanosPerBoard = 0;
+    private HashMap<Long, Integer> localIndex = new HashMap<>();
+
+    /**
+     * @param width number of squares per row.
+     * @param height number of rows; width * height may be at most 16.
+     * @param goal the goal board by position index, 0 for the blank.
+     * @param lookaheadDepth moves looked ahead at each step, at least 1.
+     * @param maxLearned the most boards the learned table keeps.
+     * @param statistics receives the performance stats.
+     */
+    public LRTAStar(int width, int height, int[] goal, int lookaheadDepth, int maxLearned, Utility statistics)
+    {
+        if (lookaheadDepth < 1)
+        {
+            throw new IllegalArgumentException("Lookahead depth must be at least 1, was " + lookaheadDepth);
+        }
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.lookaheadDepth = lookaheadDepth;
+        this.maxLearned = maxLearned;
+        this.statistics = statistics;
+        goalState = PackedBoard.pack(goal);
+        manhattan = new BatchHeuristic(width, height, goal, BatchHeuristic.MANHATTAN);
+    }
+
+    /**
+     * {@code Utility.runSearch} for LRTA*: walks from {@code initState} to the
+     * goal and replays the moves made back into {@code Puzzle}s.
+     * @return the path walked in start-to-goal order, or null if the goal was not reached within
+     *         {@code maxMoves} or the thread was interrupted.
+     */
+    public static ArrayList<Puzzle> runSearch(Puzzle initState, int lookaheadDepth, int maxLearned, int maxMoves,
+                                              Utility statistics, boolean saveToDisk)
+    {
+        LRTAStar search = new LRTAStar(3, 3, initState.getGoalNumbers(), lookaheadDepth, maxLearned, statistics);
+        MoveSequence moves = search.search(initState.getCurrentNumbers(), maxMoves);
+        if (moves == null)
+        {
+            return null;
+        }
+        ArrayList<Puzzle> solutionList = moves.replay(initState);
+        statistics.reportSolution(solutionList, saveToDisk);
+        return solutionList;
+    }
+
+    /**
+     * @param sliceMillis the time each step should take at most; the lookahead is cut short to fit.
+     *                    one move of lookahead is always made.  0 to look the full depth every time.
+     */
+    public void setStepSlice(double sliceMillis)
+    {
+        stepSliceNanos = (long) (sliceMillis * 1000000);
+    }
+
+    /**
+     * takes steps from {@code start} until the goal is reached.
+     * @param start the start board by position index, 0 for the blank.
+     * @param maxMoves the most moves to make before giving up.
+     * @return the moves made, or null if the goal was not reached or the thread was interrupted.
+     */
+    public MoveSequence search(int[] start, int maxMoves)
+    {
+        if (!Utility.isSolvable(start, PackedBoard.unpack(goalState, size), width))
+        {
+            return null;
+        }
+        MoveSequence moves = new MoveSequence();
+        long state = PackedBoard.pack(start);
+        while (state != goalState)
+        {
+            if (moves.length() >= maxMoves || Thread.currentThread().isInterrupted())
+            {
+                return null;
+            }
+            int direction = step(state);
+            moves.add(direction);
+            int blank = PackedBoard.blankPosition(state, size);
+            state = PackedBoard.slide(state, blank, blank + MoveSequence.offsetOf(direction, width));
+            statistics.setTreeDepth(moves.length());
+        }
+        return moves;
+    }
+
+    /**
+     * one real-time step: explores the boards within {@code lookaheadDepth}
+     * moves of {@code state}, learns new heuristic values for all of them
+     * but the outermost ones, and picks a move.  the board must not be the goal.
+     * @return the direction the blank should move, see {@code MoveSequence}.
+     */
+    public int step(long state)
+    {
+        long started = System.nanoTime();
+        exploreLocalSpace(state, started);
+        long learning = System.nanoTime();
+        learnLocalSpace();
+        //keep a running average of the learning cost, to know when to stop exploring next time.
+        double perBoard = (double) (System.nanoTime() - learning) / localCount;
+        learnNanosPerBoard = (learnNanosPerBoard == 0) ? perBoard : 0.9 * learnNanosPerBoard + 0.1 * perBoard;
+
+        //move to the neighbour that now looks closest to the goal.
+        int blank = PackedBoard.blankPosition(state, size);
+        int[] next = new int[4];
+        int moves = PackedBoard.neighbours(blank, width, height, next);
+        int bestTarget = next[0];
+        int bestValue = Integer.MAX_VALUE;
+        for (int i = 0; i < moves; i++)
+        {
+            int value = values[localIndex.get(PackedBoard.slide(state, blank, next[i]))];
+            if (value < bestValue)
+            {
+                bestValue = value;
+                bestTarget = next[i];
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        worstStepNanos = Math.max(worstStepNanos, elapsed);
+        totalStepNanos += elapsed;
+        steps++;
+        statistics.updateWorstStepNanos(elapsed);
+        statistics.updateClosedListLength(learned.size());
+        return MoveSequence.directionOf(bestTarget - blank, width);
+    }
+
+    /**
+     * Breadth Search from {@code root} out to {@code lookaheadDepth} moves,
+     * or until learning over what has been found would no longer fit in the
+     * time slice; the root is always expanded.
+     * afterwards the first {@code interiorCount} local boards are the
+     * expanded ones, the rest the frontier.
+     */
+    private void exploreLocalSpace(long root, long started)
+    {
+        if (localCount > 4096)
+        {
+            localIndex = new HashMap<>();   //clearing a big table costs its whole capacity.
+        } else
+        {
+            localIndex.clear();
+        }
+        localCount = 0;
+        addLocal(root, 0);
+        int[] next = new int[4];
+        int expanded = 0;
+        while (expanded < localCount && depths[expanded] < lookaheadDepth)
+        {
+            if (expanded > 0 && stepSliceNanos > 0 && expanded % 64 == 0
+                    && System.nanoTime() - started + localCount * learnNanosPerBoard > stepSliceNanos)
+            {
+                break;      //the rest of the slice is for learning.
+            }
+            long state = local[expanded];
+            if (state != goalState)
+            {
+                int blank = PackedBoard.blankPosition(state, size);
+                int moves = PackedBoard.neighbours(blank, width, height, next);
+                for (int i = 0; i < moves; i++)
+                {
+                    long child = PackedBoard.slide(state, blank, next[i]);
+                    statistics.addToNodesExpanded();
+                    if (!localIndex.containsKey(child))
+                    {
+                        addLocal(child, depths[expanded] + 1);
+                    }
+                }
+            }
+            expanded++;
+        }
+        interiorCount = expanded;
+    }
+
+    /**
+     * the learning rule of LRTA* over the whole local space: every expanded
+     * board gets one more than its best neighbour, worked inwards from the
+     * frontier in order of value like Dijkstra's algorithm, and keeps the
+     * larger of that and what it had.
+     */
+    private void learnLocalSpace()
+    {
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        for (int i = 0; i < localCount; i++)
+        {
+            if (i < interiorCount && local[i] != goalState)
+            {
+                values[i] = Integer.MAX_VALUE;
+            } else
+            {
+                values[i] = (local[i] == goalState) ? 0 : estimate(local[i]);
+                queue.add(((long) values[i] << 32) | i);
+            }
+        }
+        int[] next = new int[4];
+        while (!queue.isEmpty())
+        {
+            long entry = queue.poll();
+            int i = (int) entry;
+            if ((int) (entry >>> 32) != values[i])
+            {
+                continue;   //lowered again after this entry was queued.
+            }
+            int blank = PackedBoard.blankPosition(local[i], size);
+            int moves = PackedBoard.neighbours(blank, width, height, next);
+            for (int m = 0; m < moves; m++)
+            {
+                Integer neighbour = localIndex.get(PackedBoard.slide(local[i], blank, next[m]));
+                if (neighbour != null && neighbour < interiorCount && values[i] + 1 < values[neighbour])
+                {
+                    values[neighbour] = values[i] + 1;
+                    queue.add(((long) values[neighbour] << 32) | neighbour);
+                }
+            }
+        }
+
+        for (int i = 0; i < interiorCount; i++)
+        {
+            if (local[i] == goalState || values[i] == Integer.MAX_VALUE)
+            {
+                continue;
+            }
+            int before = estimate(local[i]);
+            if (values[i] > before)
+            {
+                learn(local[i], values[i]);
+            } else
+            {
+                values[i] = before;
+            }
+        }
+    }
+
+    private void learn(long state, int value)
+    {
+        learned.put(state, value);
+        if (learned.size() > maxLearned)
+        {
+            Iterator<Long> oldest = learned.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+            learnedDropped++;
+        }
+    }
+
+    private void addLocal(long state, int depth)
+    {
+        if (localCount == local.length)
+        {
+            local = Arrays.copyOf(local, localCount * 2);
+            depths = Arrays.copyOf(depths, localCount * 2);
+            values = Arrays.copyOf(values, localCount * 2);
+        }
+        local[localCount] = state;
+        depths[localCount] = depth;
+        localIndex.put(state, localCount++);
+    }
+
+    /**
+     * @return the learned heuristic of a board, or its Manhattan distance if none was learned.
+     */
+    private int estimate(long state)
+    {
+        Integer value = learned.get(state);
+        if (value != null)
+        {
+            return value;
+        }
+        return manhattan.estimate(state);
+    }
+
+    /**
+     * @return the longest a single step has taken so far.
+     */
+    public long getWorstStepNanos()
+    {
+        return worstStepNanos;
+    }
+
+    /**
+     * @return the average time of a step so far, 0 before the first.
+     */
+    public long getAverageStepNanos()
+    {
+        return (steps == 0) ? 0 : totalStepNanos / steps;
+    }
+
+    public int getLearnedSize()
+    {
+        return learned.size();
+    }
+
+    /**
+     * @return how many learned values were dropped to keep the table within {@code maxLearned}.
+     */
+    public long getLearnedDropped()
+    {
+        return learnedDropped;
+    }
+}
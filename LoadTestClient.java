@@ -0,0 +1,118 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Benchmarking client for {@code SolveService}.  Sends a fixed number of
+ *  solve requests from several threads at once and prints throughput,
+ *  latency percentiles and a count of the HTTP status codes received.
+ *
+ *      java LoadTestClient [url] [requests] [concurrency] [scramble moves] [seed]
+ *
+ *  Start boards are made by sliding the blank randomly away from the goal, so
+ *  every request is solvable; a fixed seed sends the same requests every run.
+ */
+public class LoadTestClient {
+
+    private static final int[] GOAL = {1, 2, 3, 4, 5, 6, 7, 8, 0};
+
+    public static void main(String[] args) throws Exception
+    {
+        String url = (args.length > 0) ? args[0] : "http://127.0.0.1:" + SolveService.DEFAULT_PORT + "/solve";
+        int requests = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        int concurrency = (args.length > 2) ? Integer.parseInt(args[2]) : 8;
+        int scrambleMoves = (args.length > 3) ? Integer.parseInt(args[3]) : 20;
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : 42L;
+
+        Random random = new Random(seed);
+        ArrayList<String> bodies = new ArrayList<>();
+        for (int i = 0; i < requests; i++)
+        {
+            bodies.add("{\"id\":" + i + ",\"start\":" + Arrays.toString(scramble(random, scrambleMoves))
+                    + ",\"goal\":" + Arrays.toString(GOAL) + ",\"algorithm\":\"manhattan\"}");
+        }
+
+        HttpClient client = HttpClient.newHttpClient();
+        ExecutorService senders = Executors.newFixedThreadPool(concurrency);
+        ConcurrentHashMap<Integer, AtomicInteger> statusCounts = new ConcurrentHashMap<>();
+        ArrayList<Future<Long>> latencies = new ArrayList<>();
+
+        long startTime = System.nanoTime();
+        for (String body : bodies)
+        {
+            latencies.add(senders.submit(() -> {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                long sent = System.nanoTime();
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                long latency = System.nanoTime() - sent;
+                statusCounts.computeIfAbsent(response.statusCode(), k -> new AtomicInteger()).incrementAndGet();
+                return latency;
+            }));
+        }
+
+        ArrayList<Long> sorted = new ArrayList<>();
+        for (Future<Long> latency : latencies)
+        {
+            sorted.add(latency.get());
+        }
+        long elapsed = System.nanoTime() - startTime;
+        senders.shutdown();
+        Collections.sort(sorted);
+
+        System.out.println("requests:     " + requests + " (" + concurrency + " concurrent)");
+        System.out.println(String.format("throughput:   %.1f requests/s", requests / (elapsed / 1e9)));
+        System.out.println(String.format("latency p50:  %.2f ms", percentile(sorted, 0.50)));
+        System.out.println(String.format("latency p95:  %.2f ms", percentile(sorted, 0.95)));
+        System.out.println(String.format("latency p99:  %.2f ms", percentile(sorted, 0.99)));
+        System.out.println(String.format("latency max:  %.2f ms", sorted.get(sorted.size() - 1) / 1e6));
+        System.out.println("status codes: " + statusCounts);
+    }
+
+    /**
+     * slides the blank of the goal board randomly, never straight back.
+     */
+    private static int[] scramble(Random random, int moves)
+    {
+        int[] board = GOAL.clone();
+        int blank = 8;
+        int previous = -1;
+        for (int i = 0; i < moves; i++)
+        {
+            ArrayList<Integer> neighbours = new ArrayList<>();
+            if (blank >= 3) neighbours.add(blank - 3);
+            if (blank < 6) neighbours.add(blank + 3);
+            if (blank % 3 > 0) neighbours.add(blank - 1);
+            if (blank % 3 < 2) neighbours.add(blank + 1);
+            neighbours.remove(Integer.valueOf(previous));
+
+            int next = neighbours.get(random.nextInt(neighbours.size()));
+            board[blank] = board[next];
+            board[next] = 0;
+            previous = blank;
+            blank = next;
+        }
+        return board;
+    }
+
+    private static double percentile(ArrayList<Long> sorted, double fraction)
+    {
+        int index = (int) Math.ceil(fraction * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)) / 1e6;
+    }
+}
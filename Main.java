@@ -1,3 +1,7 @@
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.regex.*;
 import java.util.Scanner;
@@ -10,11 +14,97 @@ import java.util.Scanner;
 
 public class Main
 {
-    public static void main(String[] args)
+    //settings for the faster, not necessarily optimal, searches.
+    private static final double WEIGHTED_ASTAR_WEIGHT = 2.0;
+    private static final double ANYTIME_INITIAL_WEIGHT = 3.0;
+    private static final double ANYTIME_WEIGHT_DECREMENT = 0.5;
+    private static final long ANYTIME_BUDGET_MILLIS = 10;
+
+    //most game states SMA* keeps in memory at once.
+    private static final int SMA_NODE_BUDGET = 100000;
+
+    //game states Beam Search keeps at each depth.
+    private static final int BEAM_WIDTH = 100;
+
+    //LRTA*: moves looked ahead per step, boards it may learn about, moves it may make.
+    private static final int LRTA_LOOKAHEAD_DEPTH = 6;
+    private static final int LRTA_MAX_LEARNED = 100000;
+    private static final int LRTA_MAX_MOVES = 100000;
+
+    //how often the long-running searches write a checkpoint to resume from.
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 60000;
+
+    public static void main(String[] args) throws InterruptedException, IOException
     {
+        if (args.length > 0 && args[0].equals("pipe"))
+        {
+            //JSON Lines from stdin to stdout:  pipe [workers] [ordered|unordered] [memory budget MB]
+            int workers = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            boolean ordered = (args.length <= 2) || !args[2].equals("unordered");
+            SolveRequest.setMemoryBudget(new MemoryBudget(memoryBudgetBytes(args, 3)));
+            new SolvePipeline(workers, ordered).run(System.in, System.out);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("histogram"))
+        {
+            //distance histogram by disk-based breadth first search:
+            //  histogram <width> <height> [pattern tiles, e.g. 1,2,3] [memory MB] [disk MB]
+            distanceHistogram(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("goals"))
+        {
+            //one start against many goals in a single search:
+            //  goals <width> <height> <start, e.g. 1,2,3,4,5,6,0,7,8> <goal> [goal ...]
+            multiGoal(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("corpus"))
+        {
+            //depth-stratified workload files:
+            //  corpus <width> <height> [per bucket] [seed] [max depth] [directory]
+            writeCorpus(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("astar"))
+        {
+            //off-heap A* with the Manhattan heuristic, checkpointed as it goes:
+            //  astar <width> <height> <start, e.g. 1,2,3,4,5,6,0,7,8> <goal>
+            checkpointedAStar(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("trace"))
+        {
+            //records every expansion for TraceAnalyzer:
+            //  trace <width> <height> <start> <goal> [astar | epea | fringe] [trace file]
+            tracedSearch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("endgame"))
+        {
+            //row by row down to a 3x3, for boards too large for an optimal search:
+            //  endgame <width> <height> <start> <goal>   or   endgame <width> <height> [random boards] [seed]
+            endgame(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("resume"))
+        {
+            //carries on from a checkpoint:  resume <checkpoint file | histogram directory> [memory MB] [disk MB]
+            resume(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("serve"))
+        {
+            //long-running HTTP mode:  serve [port] [workers] [memory budget MB]
+            int port = (args.length > 1) ? Integer.parseInt(args[1]) : SolveService.DEFAULT_PORT;
+            int workers = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            SolveRequest.setMemoryBudget(new MemoryBudget(memoryBudgetBytes(args, 3)));
+            new SolveService(port, workers).start();
+            return;
+        }
+
         int start[] = new int[9];
         int goal[] = new int[9];
-        PuzzleSquare[] gameState = new PuzzleSquare[9];
         for (int i = 0; i < start.length; i++)
         {
             start[i] = 0;
@@ -28,17 +118,7 @@ public class Main
             printTiles(goal, 'g');
             if(parityTracker(goal, start))
             {
-                int tempBlankRef = 0;
-                //create the PuzzleSquare objects
-                for(int i = 0; i < start.length; i++)
-                {
-                    gameState[i] = new PuzzleSquare(start[i], goal[i], i);
-                    if (start[i] == 0)
-                    {
-                        tempBlankRef = i;
-                    }
-                }
-                Puzzle initState = new Puzzle(gameState, tempBlankRef);
+                Puzzle initState = Utility.createPuzzle(start, goal);
                 if (Utility.isGoalState(initState))
                 {
                     System.out.println("FOUND GOAL!");
@@ -51,6 +131,288 @@ public class Main
         } while(playAgain());
     }
 
+    /**
+     * @return the memory budget in {@code args[index]}, in MB, or by default
+     * three quarters of the largest heap, leaving room for everything but the searches.
+     */
+    private static long memoryBudgetBytes(String[] args, int index)
+    {
+        if (args.length > index)
+        {
+            return Long.parseLong(args[index]) << 20;
+        }
+        return Runtime.getRuntime().maxMemory() / 4 * 3;
+    }
+
+    /**
+     * Prints how many states are at each distance from the standard goal
+     * board (tiles in order, blank last), using {@code ExternalBreadthFirst}.
+     * @param args the command line, starting with "histogram".
+     */
+    public static void distanceHistogram(String[] args) throws IOException
+    {
+        int width = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        int[] pattern = null;
+        if (args.length > 3 && !args[3].equals("all"))
+        {
+            String[] tiles = args[3].split(",");
+            pattern = new int[tiles.length];
+            for (int i = 0; i < tiles.length; i++)
+            {
+                pattern[i] = Integer.parseInt(tiles[i].trim());
+            }
+        }
+        long memoryBytes = ((args.length > 4) ? Long.parseLong(args[4]) : 256) << 20;
+        long diskBytes = ((args.length > 5) ? Long.parseLong(args[5]) : 64 * 1024) << 20;
+
+        int[] goal = new int[width * height];
+        for (int i = 0; i < goal.length - 1; i++)
+        {
+            goal[i] = i + 1;
+        }
+
+        ExternalBreadthFirst search = new ExternalBreadthFirst(width, height, goal, pattern,
+                new File("external-bfs"), memoryBytes, diskBytes);
+        printHistogram(search);
+    }
+
+    private static void printHistogram(ExternalBreadthFirst search) throws IOException
+    {
+        long startTime = System.nanoTime();
+        long[] histogram = search.run();
+        long total = 0;
+        for (int depth = 0; depth < histogram.length; depth++)
+        {
+            System.out.println(String.format("%4d %,15d", depth, histogram[depth]));
+            total += histogram[depth];
+        }
+        System.out.println(String.format("total %,d states in %.1f s, peak disk %,d bytes", total,
+                (System.nanoTime() - startTime) / 1e9, search.getPeakDiskBytes()));
+        printCheckpointCost(search.getCheckpointMillis(), startTime);
+    }
+
+    /**
+     * Writes an easy, a medium and a hard corpus file of random boards with
+     * {@code InstanceGenerator}.  The same seed always writes the same files.
+     * @param args the command line, starting with "corpus".
+     */
+    public static void writeCorpus(String[] args) throws IOException
+    {
+        int width = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        int perBucket = (args.length > 3) ? Integer.parseInt(args[3]) : 50;
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : 1;
+        int maxDepth = (args.length > 5) ? Integer.parseInt(args[5]) : ((width == 3 && height == 3) ? 31 : 36);
+        File directory = new File((args.length > 6) ? args[6] : "corpus");
+
+        try
+        {
+            new InstanceGenerator(seed).writeCorpus(directory, width, height, perBucket, maxDepth);
+        } catch (IllegalArgumentException e)
+        {
+            System.out.println(e.getMessage());
+            return;
+        }
+        System.out.println("wrote " + width + "x" + height + " corpus to " + directory);
+    }
+
+    /**
+     * Solves one board with {@code OffHeapAStar}, writing a checkpoint to
+     * "A Star Checkpoint.bin" every {@code CHECKPOINT_INTERVAL_MILLIS}.
+     * @param args the command line, starting with "astar".
+     */
+    public static void checkpointedAStar(String[] args)
+    {
+        int width = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        int[] start = parseBoard(args[3]);
+        int[] goal = parseBoard(args[4]);
+
+        Utility statistics = new Utility(4);
+        OffHeapAStar search = new OffHeapAStar(width, height, goal, OffHeapAStar.MANHATTAN, statistics);
+        search.setCheckpoint(new File("A Star Checkpoint.bin"), CHECKPOINT_INTERVAL_MILLIS);
+        long startTime = System.nanoTime();
+        printMoves(search.search(start), statistics);
+        printCheckpointCost(search.getCheckpointMillis(), startTime);
+    }
+
+    /**
+     * Solves one board with off-heap A*, EPEA* or Fringe Search, recording
+     * every expansion with {@code ExpansionTrace} for {@code TraceAnalyzer}.
+     * @param args the command line, starting with "trace".
+     */
+    public static void tracedSearch(String[] args) throws IOException
+    {
+        int width = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        int[] start = parseBoard(args[3]);
+        int[] goal = parseBoard(args[4]);
+        String algorithm = (args.length > 5) ? args[5] : "astar";
+        File file = new File((args.length > 6) ? args[6] : "Expansion Trace.bin");
+
+        Utility statistics = new Utility(4);
+        MoveSequence moves;
+        try (ExpansionTrace trace = new ExpansionTrace(file, width, height, goal, ExpansionTrace.DEFAULT_CAPACITY))
+        {
+            if (algorithm.equals("fringe"))
+            {
+                FringeSearch search = new FringeSearch(width, height, goal, statistics);
+                search.setTrace(trace);
+                moves = search.search(start);
+            } else
+            {
+                OffHeapAStar search = new OffHeapAStar(width, height, goal, OffHeapAStar.MANHATTAN, statistics);
+                search.setPartialExpansion(algorithm.equals("epea"));
+                search.setTrace(trace);
+                moves = search.search(start);
+            }
+        }
+        printMoves(moves, statistics);
+        System.out.println("trace written to " + file + "; read it with: java TraceAnalyzer \"" + file + "\"");
+    }
+
+    /**
+     * Solves one board with {@code EndgameSolver}, or, without a start and
+     * goal, that many random boards against the standard goal, printing the
+     * solution lengths and boards solved per second.
+     * @param args the command line, starting with "endgame".
+     */
+    public static void endgame(String[] args)
+    {
+        int width = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        if (args.length > 4 && args[3].contains(","))
+        {
+            EndgameSolver solver = new EndgameSolver(width, height, parseBoard(args[4]));
+            long startTime = System.nanoTime();
+            MoveSequence moves = solver.solve(parseBoard(args[3]));
+            System.out.println((moves == null) ? "unreachable" : moves.length() + " moves  " + moves);
+            System.out.println(String.format("solved in %.3f ms, building the macro tables included", (System.nanoTime() - startTime) / 1e6));
+            return;
+        }
+
+        int boards = (args.length > 3) ? Integer.parseInt(args[3]) : 1000;
+        InstanceGenerator generator = new InstanceGenerator((args.length > 4) ? Long.parseLong(args[4]) : 1);
+        int[] goal = InstanceGenerator.standardGoal(width, height);
+        EndgameSolver solver = new EndgameSolver(width, height, goal);
+        solver.solve(generator.randomSolvable(width, height, goal));     //builds the macro tables.
+        long totalMoves = 0;
+        int longest = 0;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < boards; i++)
+        {
+            int length = solver.solve(generator.randomSolvable(width, height, goal)).length();
+            totalMoves += length;
+            longest = Math.max(longest, length);
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.println(String.format("%,d random %dx%d boards: mean %.1f moves, longest %d, %,.0f boards/s",
+                boards, width, height, (double) totalMoves / boards, longest, boards / seconds));
+    }
+
+    /**
+     * Carries on a search from its checkpoint: a directory is a distance
+     * histogram left by "histogram", a file is told apart by its first four
+     * bytes as an IDA* or an off-heap A* checkpoint.
+     * @param args the command line, starting with "resume".
+     */
+    public static void resume(String[] args) throws IOException
+    {
+        File checkpoint = new File(args[1]);
+        if (checkpoint.isDirectory())
+        {
+            long memoryBytes = ((args.length > 2) ? Long.parseLong(args[2]) : 256) << 20;
+            long diskBytes = ((args.length > 3) ? Long.parseLong(args[3]) : 64 * 1024) << 20;
+            printHistogram(ExternalBreadthFirst.resume(checkpoint, memoryBytes, diskBytes));
+            return;
+        }
+
+        int magic;
+        try (DataInputStream input = new DataInputStream(new FileInputStream(checkpoint)))
+        {
+            magic = input.readInt();
+        }
+        long startTime = System.nanoTime();
+        if (magic == IDAStar.CHECKPOINT_MAGIC)
+        {
+            IDAStar search = IDAStar.resume(checkpoint, CHECKPOINT_INTERVAL_MILLIS, true);
+            search.Search();
+            printCheckpointCost(search.getCheckpointMillis(), startTime);
+        } else if (magic == OffHeapAStar.CHECKPOINT_MAGIC)
+        {
+            Utility statistics = new Utility(4);
+            OffHeapAStar search = OffHeapAStar.resume(checkpoint, CHECKPOINT_INTERVAL_MILLIS, statistics);
+            printMoves(search.continueSearch(), statistics);
+            printCheckpointCost(search.getCheckpointMillis(), startTime);
+        } else
+        {
+            System.out.println(checkpoint + " is not a checkpoint");
+        }
+    }
+
+    private static void printMoves(MoveSequence moves, Utility statistics)
+    {
+        if (moves == null)
+        {
+            System.out.println("unreachable");
+        } else
+        {
+            System.out.println(moves.length() + " moves  " + moves);
+        }
+        System.out.println(String.format("%,d states expanded", statistics.getTotalNodesExpanded()));
+    }
+
+    private static void printCheckpointCost(long checkpointMillis, long startTime)
+    {
+        long totalMillis = (System.nanoTime() - startTime) / 1000000;
+        System.out.println(String.format("checkpoints took %,d ms of %,d ms", checkpointMillis, totalMillis));
+    }
+
+    /**
+     * Prints the cost and moves of a shortest solution from one start board
+     * to each of several goal boards, using {@code MultiGoalSearch}.
+     * @param args the command line, starting with "goals".
+     */
+    public static void multiGoal(String[] args)
+    {
+        int width = Integer.parseInt(args[1]);
+        int height = Integer.parseInt(args[2]);
+        int[] start = parseBoard(args[3]);
+        int[][] goals = new int[args.length - 4][];
+        for (int i = 0; i < goals.length; i++)
+        {
+            goals[i] = parseBoard(args[4 + i]);
+        }
+
+        MultiGoalSearch search = new MultiGoalSearch(width, height, start);
+        long startTime = System.nanoTime();
+        MoveSequence[] solutions = search.search(goals);
+        for (int i = 0; i < goals.length; i++)
+        {
+            if (solutions[i] == null)
+            {
+                System.out.println(args[4 + i] + "  unreachable");
+            } else
+            {
+                System.out.println(args[4 + i] + "  " + solutions[i].length() + " moves  " + solutions[i]);
+            }
+        }
+        System.out.println(String.format("%,d states expanded in %.1f s",
+                search.getStatistics().getTotalNodesExpanded(), (System.nanoTime() - startTime) / 1e9));
+    }
+
+    private static int[] parseBoard(String text)
+    {
+        String[] numbers = text.split(",");
+        int[] board = new int[numbers.length];
+        for (int i = 0; i < numbers.length; i++)
+        {
+            board[i] = Integer.parseInt(numbers[i].trim());
+        }
+        return board;
+    }
+
     /**
      * Takes user input to determine which search to be run.
      * @param goal
@@ -64,7 +426,16 @@ public class Main
         System.out.println("       (a) BREADTH-FIRST SEARCH");
         System.out.println("       (b) GREEDY BREADTH-FIRST SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
         System.out.println("       (c) A* SEARCH USING THE MISPLACED TILES HEURISTIC");
-        System.out.println("       (d) A* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC\n");
+        System.out.println("       (d) A* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
+        System.out.println("       (e) WEIGHTED A* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC (WEIGHT " + WEIGHTED_ASTAR_WEIGHT + ")");
+        System.out.println("       (f) ANYTIME A* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC (" + ANYTIME_BUDGET_MILLIS + " MS BUDGET)");
+        System.out.println("       (g) ITERATIVE DEEPENING A* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
+        System.out.println("       (h) PORTFOLIO: RACE SEVERAL OPTIMAL SEARCHES AND KEEP THE FASTEST");
+        System.out.println("       (i) SMA* SEARCH USING THE MISPLACED TILES HEURISTIC (" + SMA_NODE_BUDGET + " STATES IN MEMORY)");
+        System.out.println("       (j) BEAM SEARCH USING THE MANHATTAN DISTANCE HEURISTIC (WIDTH " + BEAM_WIDTH + ")");
+        System.out.println("       (k) ENHANCED PARTIAL EXPANSION A* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
+        System.out.println("       (l) FRINGE SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
+        System.out.println("       (m) REAL-TIME LRTA* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC (LOOKAHEAD " + LRTA_LOOKAHEAD_DEPTH + ")\n");
         System.out.println("FOR HARDER PUZZLES, SOME SEARCHES MAY TAKE AWHILE. \n" +
                 "PLEASE BE PATIENT, ESPECIALLY FOR BREADTH AND MISPLACED A*.\n");
         Scanner keyboard = new Scanner(System.in);
@@ -73,7 +444,7 @@ public class Main
         {
             if(!validate(input, "searchChoice"))
             {
-                System.out.println("ENTER a, b, c, OR d.\n");
+                System.out.println("ENTER a, b, c, d, e, f, g, h, i, j, k, l, OR m.\n");
                 input = keyboard.nextLine();
             }
             else
@@ -103,6 +474,65 @@ public class Main
                 ManhattanAStar manhattanAStar = new ManhattanAStar(initState, true);
                 ArrayList<Puzzle> solutionManhattan = manhattanAStar.Search();
                 break;
+            case 'e':
+                System.out.println("WEIGHTED A* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
+                WeightedAStar weightedAStar = new WeightedAStar(initState, WEIGHTED_ASTAR_WEIGHT, true);
+                ArrayList<Puzzle> solutionWeighted = weightedAStar.Search();
+                break;
+            case 'f':
+                System.out.println("ANYTIME A* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
+                AnytimeAStar anytimeAStar = new AnytimeAStar(initState, ANYTIME_INITIAL_WEIGHT,
+                        ANYTIME_WEIGHT_DECREMENT, ANYTIME_BUDGET_MILLIS, true);
+                ArrayList<Puzzle> solutionAnytime = anytimeAStar.Search();
+                break;
+            case 'g':
+                System.out.println("ITERATIVE DEEPENING A* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
+                IDAStar idaStar = new IDAStar(initState, true);
+                idaStar.setCheckpoint(new File("IDA Star Checkpoint.bin"), CHECKPOINT_INTERVAL_MILLIS);
+                ArrayList<Puzzle> solutionIterative = idaStar.Search();
+                break;
+            case 'h':
+                System.out.println("PORTFOLIO SEARCH");
+                PortfolioSearch portfolioSearch = new PortfolioSearch(initState, true, true);
+                ArrayList<Puzzle> solutionPortfolio = portfolioSearch.Search();
+                break;
+            case 'i':
+                System.out.println("SMA* SEARCH USING THE MISPLACED TILES HEURISTIC");
+                SMAStar smaStar = new SMAStar(initState, SMA_NODE_BUDGET, 3, true);
+                ArrayList<Puzzle> solutionSMA = smaStar.Search();
+                if (solutionSMA == null)
+                {
+                    System.out.println("NO SOLUTION FITS IN " + SMA_NODE_BUDGET + " STATES.");
+                }
+                break;
+            case 'j':
+                System.out.println("BEAM SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
+                BeamSearch beamSearch = new BeamSearch(initState, BEAM_WIDTH, 4, true);
+                beamSearch.setKnownOptimalLength(EightPuzzleTable.distance(start, goal) + 1);
+                ArrayList<Puzzle> solutionBeam = beamSearch.Search();
+                if (solutionBeam == null)
+                {
+                    System.out.println("THE BEAM LOST EVERY PATH TO THE GOAL.");
+                }
+                break;
+            case 'k':
+                System.out.println("ENHANCED PARTIAL EXPANSION A* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
+                PartialExpansionAStar partialExpansionAStar = new PartialExpansionAStar(initState, 4, true);
+                ArrayList<Puzzle> solutionPartial = partialExpansionAStar.Search();
+                break;
+            case 'l':
+                System.out.println("FRINGE SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
+                ArrayList<Puzzle> solutionFringe = FringeSearch.runSearch(initState, new Utility(15), true);
+                break;
+            case 'm':
+                System.out.println("REAL-TIME LRTA* SEARCH USING THE MANHATTAN DISTANCE HEURISTIC");
+                ArrayList<Puzzle> solutionRealTime = LRTAStar.runSearch(initState, LRTA_LOOKAHEAD_DEPTH,
+                        LRTA_MAX_LEARNED, LRTA_MAX_MOVES, new Utility(16), true);
+                if (solutionRealTime == null)
+                {
+                    System.out.println("THE GOAL WAS NOT REACHED IN " + LRTA_MAX_MOVES + " MOVES.");
+                }
+                break;
         }
     }
 
@@ -213,7 +643,7 @@ public class Main
      * "y/n" checks to see if the user wants to continue playing the game,
      * makes sure the first letter the user enters is either "y", "n", "yes", or "no".
      * "searchChoice" determines which search to run,
-     * checks see if the user enters anything other than "a", "b", "c", or "d".
+     * checks see if the user enters anything other than "a" through "m".
      * @param input
      * @param flag
      * @return boolean result
@@ -226,7 +656,7 @@ public class Main
         else if(flag.equals("y/n"))
             p = Pattern.compile("(?i)([y]|[n]|[yes]|[no])");
         else if(flag.equals("searchChoice"))
-            p = Pattern.compile("(?i)([a]|[b]|[c]|[d])");
+            p = Pattern.compile("(?i)([a]|[b]|[c]|[d]|[e]|[f]|[g]|[h]|[i]|[j]|[k]|[l]|[m])");
         else
             p = Pattern.compile("");
         Matcher m = p.matcher(input);
@@ -289,36 +719,14 @@ public class Main
 
     /**
      *  Determines the parity of the 8-puzzles that were chosen.
-     *  Determines whether the parities match.
+     *  Determines whether the parities match, see {@code Utility.isSolvable}.
      * @param goal
      * @param start
      * @return parity result
      */
     public static boolean parityTracker(int goal[], int start[])
     {
-        int parityGoalCount = 0;
-        int parityStartCount = 0;
-        for(int i = 0; i < goal.length-1; i++)
-        {
-            for(int j = i+1; j < goal.length; j++)
-            {
-                if(goal[i] != 0 && goal[j] != 0)
-                {
-                    if(goal[i] > goal[j])
-                    {
-                        parityGoalCount++;
-                    }
-                }
-                if(start[i] != 0 && start[j] != 0)
-                {
-                    if(start[i] > start[j]){
-                        parityStartCount++;
-                    }
-                }
-
-            }
-        }
-        if(parityGoalCount%2 == parityStartCount%2)
+        if(Utility.isSolvable(start, goal, 3))
         {
             System.out.println("THE PARITIES MATCH.");
             return true;
@@ -0,0 +1,218 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  A limit on the memory all searches running at once may hold together,
+ *  so one huge search cannot take the heap from every other request.
+ *
+ *  Each request is admitted with an {@code Account}, which is bound to the
+ *  thread that runs it (and to the threads that thread starts, for the
+ *  portfolio).  Every {@code Utility} made on such a thread estimates the
+ *  bytes its search holds from its frontier and closed list sizes and
+ *  reserves them from the account, a chunk at a time.  When the budget has
+ *  no room for the next chunk the account is marked as exceeded and the
+ *  search's thread is interrupted, which every search already treats as
+ *  "give up and return null".  The caller can then clear the interrupt and
+ *  try a memory-bounded search instead, see {@code SolveRequest.search}.
+ *  A search only looks for the interrupt now and then, so it may still
+ *  return a solution; the caller clears the interrupt either way.
+ *
+ *  The estimates are counts times a typical size per state, not
+ *  measurements, so the budget should leave some headroom below the heap.
+ */
+public class MemoryBudget {
+
+    static final long CHUNK_BYTES = 1 << 20;    //reserved at a time, to keep the shared counter quiet.
+
+    private static final InheritableThreadLocal<Account> CURRENT = new InheritableThreadLocal<>();
+
+    private final long limitBytes;
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong exceeded = new AtomicLong();
+
+    /**
+     * @param limitBytes the most all admitted searches may hold together.
+     */
+    public MemoryBudget(long limitBytes)
+    {
+        this.limitBytes = limitBytes;
+    }
+
+    /**
+     * admits a request if at least {@code freeBytes} of the budget are free,
+     * and binds its account to this thread until the account is closed.
+     * nothing is reserved until its searches grow.
+     * @return the account, or null if there is no room (the request should be rejected).
+     */
+    public Account admit(long freeBytes)
+    {
+        if (reservedBytes.get() + freeBytes > limitBytes)
+        {
+            rejected.incrementAndGet();
+            return null;
+        }
+        Account account = new Account();
+        admitted.incrementAndGet();
+        CURRENT.set(account);
+        return account;
+    }
+
+    /**
+     * opens an account that is not bound to any thread and not counted as
+     * admitted, for memory kept from one request to the next, such as a
+     * cache.  it holds its reservation until it is closed.
+     */
+    public Account openStanding()
+    {
+        return new Account();
+    }
+
+    /**
+     * @return the account bound to this thread, or null if searches here are not budgeted.
+     */
+    static Account current()
+    {
+        return CURRENT.get();
+    }
+
+    public long getLimitBytes()
+    {
+        return limitBytes;
+    }
+
+    /**
+     * @return the bytes reserved right now by every open account.
+     */
+    public long getReservedBytes()
+    {
+        return reservedBytes.get();
+    }
+
+    public long getAdmitted()
+    {
+        return admitted.get();
+    }
+
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+
+    /**
+     * @return how many searches were stopped for running out of budget.
+     */
+    public long getExceeded()
+    {
+        return exceeded.get();
+    }
+
+    /**
+     * the bytes held by one request's searches.
+     */
+    public class Account implements AutoCloseable {
+
+        private final AtomicLong heldBytes = new AtomicLong();
+        private final AtomicLong peakBytes = new AtomicLong();
+        private volatile boolean overBudget = false;
+
+        /**
+         * takes {@code bytes} more from the budget, if there is room.
+         * @return false, marking the account as over budget, if there was not.
+         */
+        boolean reserve(long bytes)
+        {
+            long before;
+            do
+            {
+                before = reservedBytes.get();
+                if (before + bytes > limitBytes)
+                {
+                    if (!overBudget)
+                    {
+                        overBudget = true;
+                        exceeded.incrementAndGet();
+                    }
+                    return false;
+                }
+            } while (!reservedBytes.compareAndSet(before, before + bytes));
+            peakBytes.accumulateAndGet(heldBytes.addAndGet(bytes), Math::max);
+            return true;
+        }
+
+        /**
+         * gives back {@code bytes} of what is held, for when part of it is dropped.
+         */
+        void release(long bytes)
+        {
+            long given = Math.min(bytes, heldBytes.get());
+            heldBytes.addAndGet(-given);
+            reservedBytes.addAndGet(-given);
+        }
+
+        /**
+         * @return the bytes held right now.
+         */
+        public long getHeldBytes()
+        {
+            return heldBytes.get();
+        }
+
+        /**
+         * gives back everything held, for when the searches that held it are finished.
+         * the peak and the over-budget mark are kept.
+         */
+        public void releaseAll()
+        {
+            reservedBytes.addAndGet(-heldBytes.getAndSet(0));
+        }
+
+        /**
+         * @return the bytes still free in the whole budget.
+         */
+        public long getAvailableBytes()
+        {
+            return Math.max(0, limitBytes - reservedBytes.get());
+        }
+
+        /**
+         * @return the most this account has held at once.
+         */
+        public long getPeakBytes()
+        {
+            return peakBytes.get();
+        }
+
+        /**
+         * @return whether a search was stopped because the budget had no room.
+         */
+        public boolean isOverBudget()
+        {
+            return overBudget;
+        }
+
+        /**
+         * clears the over-budget mark, before trying a smaller search.
+         */
+        public void clearOverBudget()
+        {
+            overBudget = false;
+        }
+
+        /**
+         * releases everything held and unbinds the account from this thread.
+         */
+        @Override
+        public void close()
+        {
+            releaseAll();
+            if (CURRENT.get() == this)
+            {
+                CURRENT.remove();
+            }
+        }
+    }
+}
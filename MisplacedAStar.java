@@ -27,6 +27,26 @@ public class MisplacedAStar {
         statisticsGatherer = new Utility(3);
     }
 
+    /**
+     * lets an inconsistent heuristic still find the shortest path by
+     * expanding closed states again when they are reached more cheaply.
+     * @param reopen true to re-open closed states; off by default.
+     */
+    public void setReopenClosedNodes(boolean reopen)
+    {
+        statisticsGatherer.setReopenClosedNodes(reopen);
+    }
+
+    /**
+     * keeps the frontier and closed list in off-heap buffers instead of
+     * {@code ArrayList}s; see {@code OffHeapAStar}.
+     * @param offHeap true to use off-heap storage; off by default.
+     */
+    public void setOffHeapStorage(boolean offHeap)
+    {
+        statisticsGatherer.setOffHeapStorage(offHeap);
+    }
+
     /**
     Runs the given search method and returns the solution path in 
     an ArrayList, in order of first move to last move.
@@ -35,4 +55,13 @@ public class MisplacedAStar {
         solutionList = Utility.runSearch(currentState, statisticsGatherer, saveToDisk);
         return solutionList;
     }
+
+    /**
+     * @return the performance stats of the last {@code Search()}; the ASCII
+     * report is only drawn when saving to disk.
+     */
+    public Utility getStatistics()
+    {
+        return statisticsGatherer;
+    }
 }
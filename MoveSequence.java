@@ -0,0 +1,307 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  A compact solution: the directions the blank square slides in, two bits
+ *  per move, instead of a full {@code Puzzle} per step.  A 30 move solution
+ *  fits in a single long.  The boards along the way are only rebuilt when
+ *  they are asked for, either all at once with {@code replay} or one at a
+ *  time with {@code states}.
+ */
+public class MoveSequence {
+
+    //directions the blank square moves in; the tile it swaps with moves the opposite way.
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+
+    private static final String LETTERS = "UDLR";
+    private static final int MOVES_PER_LONG = 32;
+
+    private long[] packedMoves = new long[1];
+    private int length = 0;
+
+    public MoveSequence()
+    {
+    }
+
+    /**
+     * builds the sequence from a solution path in start-to-goal order, as
+     * returned by the search classes.
+     * @param solutionList consecutive game states; each must be one move from the previous one.
+     * @param width number of squares per row of the board.
+     */
+    public static MoveSequence fromSolution(ArrayList<Puzzle> solutionList, int width)
+    {
+        MoveSequence moves = new MoveSequence();
+        for (int i = 1; i < solutionList.size(); i++)
+        {
+            int from = solutionList.get(i - 1).getBlankSquare().getSquarePosition();
+            int to = solutionList.get(i).getBlankSquare().getSquarePosition();
+            moves.add(directionOf(to - from, width));
+        }
+        return moves;
+    }
+
+    /**
+     * builds the sequence by following the parent references of a goal
+     * state, without collecting the states on the path.
+     * @param goalState the goal state found by a search.
+     * @param width number of squares per row of the board.
+     */
+    public static MoveSequence fromGoalState(Puzzle goalState, int width)
+    {
+        int[] reversed = new int[goalState.getDepth()];
+        int count = 0;
+        for (Puzzle state = goalState; state.getParentState() != null; state = state.getParentState())
+        {
+            int from = state.getParentState().getBlankSquare().getSquarePosition();
+            int to = state.getBlankSquare().getSquarePosition();
+            reversed[count++] = directionOf(to - from, width);
+        }
+
+        MoveSequence moves = new MoveSequence();
+        for (int i = count - 1; i >= 0; i--)
+        {
+            moves.add(reversed[i]);
+        }
+        return moves;
+    }
+
+    /**
+     * builds the sequence for a search over packed boards that keeps, for
+     * each state, the direction the blank moved to reach it: those moves are
+     * undone from {@code state} back to the state recorded with direction -1.
+     * @param state the packed board the path ends at.
+     * @param cameFrom direction the blank moved to reach each state, -1 for the start.
+     * @param width number of squares per row of the board.
+     * @param size number of squares on the board.
+     */
+    public static MoveSequence fromCameFrom(long state, HashMap<Long, Byte> cameFrom, int width, int size)
+    {
+        int[] reversed = new int[64];
+        int count = 0;
+        for (int direction = cameFrom.get(state); direction >= 0; direction = cameFrom.get(state))
+        {
+            if (count == reversed.length)
+            {
+                reversed = Arrays.copyOf(reversed, count * 2);
+            }
+            reversed[count++] = direction;
+            int blank = PackedBoard.blankPosition(state, size);
+            state = PackedBoard.slide(state, blank, blank - offsetOf(direction, width));
+        }
+
+        MoveSequence moves = new MoveSequence();
+        for (int i = count - 1; i >= 0; i--)
+        {
+            moves.add(reversed[i]);
+        }
+        return moves;
+    }
+
+    /**
+     * reads a sequence written by {@code toString}, e.g. "RDLU".
+     * @throws IllegalArgumentException if a letter is not one of U, D, L or R.
+     */
+    public static MoveSequence parse(String letters)
+    {
+        MoveSequence moves = new MoveSequence();
+        for (int i = 0; i < letters.length(); i++)
+        {
+            int direction = LETTERS.indexOf(letters.charAt(i));
+            if (direction < 0)
+            {
+                throw new IllegalArgumentException("Not a move: '" + letters.charAt(i) + "'");
+            }
+            moves.add(direction);
+        }
+        return moves;
+    }
+
+    /**
+     * translates a change in blank position into a direction.
+     * @param offset new blank position minus old blank position.
+     * @param width number of squares per row of the board.
+     */
+    public static int directionOf(int offset, int width)
+    {
+        if (offset == -width)
+        {
+            return UP;
+        } else if (offset == width)
+        {
+            return DOWN;
+        } else if (offset == -1)
+        {
+            return LEFT;
+        } else if (offset == 1)
+        {
+            return RIGHT;
+        }
+        throw new IllegalArgumentException("Blank moved by " + offset + ", which is not a single move");
+    }
+
+    /**
+     * translates a direction into a change in blank position, as used by
+     * {@code PuzzleSquare.getMoves()}.
+     * @param width number of squares per row of the board.
+     */
+    public static int offsetOf(int direction, int width)
+    {
+        switch (direction)
+        {
+            case UP:
+                return -width;
+            case DOWN:
+                return width;
+            case LEFT:
+                return -1;
+            default:
+                return 1;
+        }
+    }
+
+    public void add(int direction)
+    {
+        if (length == packedMoves.length * MOVES_PER_LONG)
+        {
+            packedMoves = Arrays.copyOf(packedMoves, packedMoves.length * 2);
+        }
+        packedMoves[length / MOVES_PER_LONG] |= ((long) direction) << (2 * (length % MOVES_PER_LONG));
+        length++;
+    }
+
+    public int get(int index)
+    {
+        if (index < 0 || index >= length)
+        {
+            throw new IndexOutOfBoundsException("Move " + index + " of " + length);
+        }
+        return (int) (packedMoves[index / MOVES_PER_LONG] >>> (2 * (index % MOVES_PER_LONG))) & 3;
+    }
+
+    /**
+     * @return the number of moves, one less than the number of states on the path.
+     */
+    public int length()
+    {
+        return length;
+    }
+
+    /**
+     * rebuilds every state on the path.
+     * @param initState the start state the moves were found from.
+     * @return the states in start-to-goal order, including the start state.
+     */
+    public ArrayList<Puzzle> replay(Puzzle initState)
+    {
+        ArrayList<Puzzle> solutionList = new ArrayList<>();
+        Iterator<Puzzle> states = states(initState);
+        while (states.hasNext())
+        {
+            solutionList.add(states.next());
+        }
+        return solutionList;
+    }
+
+    /**
+     * walks the path one state at a time; each state is built only when
+     * {@code next} is called.  the start state comes first.
+     * @param initState the start state the moves were found from.
+     * @throws IllegalStateException from {@code next} if a move would slide the blank off the board.
+     */
+    public Iterator<Puzzle> states(Puzzle initState)
+    {
+        return new Iterator<Puzzle>() {
+            private Puzzle current = null;
+            private int nextMove = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return current == null || nextMove < length;
+            }
+
+            @Override
+            public Puzzle next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                if (current == null)
+                {
+                    current = initState;
+                    return current;
+                }
+
+                int offset = offsetOf(get(nextMove), 3);   //Puzzle boards are always 3 squares wide.
+                boolean allowed = false;
+                for (int move : current.getBlankSquare().getMoves())
+                {
+                    allowed |= (move == offset);
+                }
+                if (!allowed)
+                {
+                    throw new IllegalStateException("Move " + nextMove + " ('" + LETTERS.charAt(get(nextMove))
+                            + "') slides the blank off the board");
+                }
+                current = Utility.createChild(current, offset);
+                nextMove++;
+                return current;
+            }
+        };
+    }
+
+    /**
+     * @return the moves packed into bytes, four per byte, preceded by the move count (4 bytes).
+     */
+    public byte[] toBytes()
+    {
+        byte[] bytes = new byte[4 + (length + 3) / 4];
+        bytes[0] = (byte) (length >>> 24);
+        bytes[1] = (byte) (length >>> 16);
+        bytes[2] = (byte) (length >>> 8);
+        bytes[3] = (byte) length;
+        for (int i = 0; i < length; i++)
+        {
+            bytes[4 + i / 4] |= (byte) (get(i) << (2 * (i % 4)));
+        }
+        return bytes;
+    }
+
+    /**
+     * reads moves written by {@code toBytes}.
+     */
+    public static MoveSequence fromBytes(byte[] bytes)
+    {
+        int count = ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+        MoveSequence moves = new MoveSequence();
+        for (int i = 0; i < count; i++)
+        {
+            moves.add((bytes[4 + i / 4] >>> (2 * (i % 4))) & 3);
+        }
+        return moves;
+    }
+
+    /**
+     * @return the moves as letters, U, D, L or R for each direction the blank slides.
+     */
+    public String toString()
+    {
+        StringBuilder letters = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+        {
+            letters.append(LETTERS.charAt(get(i)));
+        }
+        return letters.toString();
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Finds shortest solutions from one start board to many goal boards in a
+ *  single Breadth Search, instead of one search per goal.  Every goal is a
+ *  key in a {@code HashMap} of packed boards, so checking whether a
+ *  generated state is one of the goals is one lookup however many goals
+ *  there are.  The search stops as soon as the last goal is reached, or when
+ *  the depth or state limit is hit; goals not reached by then get no
+ *  solution.
+ *
+ *  Boards are {@code PackedBoard} longs, so any board of up to 16 squares
+ *  works.  For each state only the direction the blank came from is kept;
+ *  the path back to the start is rebuilt by undoing those moves.
+ */
+public class MultiGoalSearch {
+
+    private int width;
+    private int height;
+    private int size;
+    private int[] start;
+    private int depthLimit = Integer.MAX_VALUE;
+    private long stateLimit = Long.MAX_VALUE;
+    private Utility statisticsGatherer = new Utility(12);
+
+    /**
+     * @param width number of squares per row.
+     * @param height number of rows; width * height may be at most 16.
+     * @param start the start board by position index, 0 for the blank.
+     */
+    public MultiGoalSearch(int width, int height, int[] start)
+    {
+        if (width * height > PackedBoard.MAX_SQUARES || start.length != width * height)
+        {
+            throw new IllegalArgumentException("Board must have width * height squares, at most "
+                    + PackedBoard.MAX_SQUARES);
+        }
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.start = start.clone();
+    }
+
+    /**
+     * @param depthLimit the deepest the search goes; goals further away are not reached.
+     */
+    public void setDepthLimit(int depthLimit)
+    {
+        this.depthLimit = depthLimit;
+    }
+
+    /**
+     * @param stateLimit the most states the search keeps; it stops once this many are known.
+     */
+    public void setStateLimit(long stateLimit)
+    {
+        this.stateLimit = stateLimit;
+    }
+
+    /**
+     * searches until every goal is reached or a limit is hit.
+     * @param goals the goal boards by position index, 0 for the blank.
+     * @return for each goal, the moves of a shortest solution (its length is
+     *         the cost), or null if the goal was not reached.
+     */
+    public MoveSequence[] search(int[][] goals)
+    {
+        MoveSequence[] solutions = new MoveSequence[goals.length];
+        HashMap<Long, Integer> goalIndex = new HashMap<>();
+        for (int i = 0; i < goals.length; i++)
+        {
+            if (!Utility.isSolvable(start, goals[i], width))
+            {
+                continue;
+            }
+            goalIndex.putIfAbsent(PackedBoard.pack(goals[i]), i);
+        }
+        int remaining = goalIndex.size();
+
+        //direction the blank moved to reach each known state; -1 for the start.
+        HashMap<Long, Byte> cameFrom = new HashMap<>();
+        long startState = PackedBoard.pack(start);
+        cameFrom.put(startState, (byte) -1);
+        if (goalIndex.containsKey(startState))
+        {
+            solutions[goalIndex.get(startState)] = new MoveSequence();
+            remaining--;
+        }
+
+        ArrayDeque<Long> frontier = new ArrayDeque<>();
+        frontier.add(startState);
+        int[] targets = new int[4];
+        int layerEnd = 1;   //states left to expand at the current depth.
+        int depth = 0;
+
+        while (remaining > 0 && !frontier.isEmpty() && depth < depthLimit && cameFrom.size() < stateLimit)
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                break;
+            }
+            long state = frontier.poll();
+            int blank = PackedBoard.blankPosition(state, size);
+            int moves = PackedBoard.neighbours(blank, width, height, targets);
+            for (int i = 0; i < moves; i++)
+            {
+                long child = PackedBoard.slide(state, blank, targets[i]);
+                statisticsGatherer.addToNodesExpanded();
+                if (cameFrom.containsKey(child))
+                {
+                    statisticsGatherer.addToDuplicatesPruned();
+                    continue;
+                }
+                cameFrom.put(child, (byte) MoveSequence.directionOf(targets[i] - blank, width));
+                frontier.add(child);
+
+                Integer goal = goalIndex.get(child);
+                if (goal != null)
+                {
+                    solutions[goal] = MoveSequence.fromCameFrom(child, cameFrom, width, size);
+                    remaining--;
+                }
+            }
+
+            if (--layerEnd == 0)
+            {
+                depth++;
+                layerEnd = frontier.size();
+                statisticsGatherer.setTreeDepth(depth);
+            }
+            statisticsGatherer.updateFrontierListLength(frontier.size());
+        }
+        statisticsGatherer.updateClosedListLength(cameFrom.size() - frontier.size());
+
+        //a goal listed twice shares the first one's answer.
+        for (int i = 0; i < goals.length; i++)
+        {
+            Integer first = goalIndex.get(PackedBoard.pack(goals[i]));
+            if (first != null && first != i)
+            {
+                solutions[i] = solutions[first];
+            }
+        }
+        return solutions;
+    }
+
+    /**
+     * @return the performance stats of the last {@code search}, shared by all the goals.
+     */
+    public Utility getStatistics()
+    {
+        return statisticsGatherer;
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Every board within {@code RADIUS} moves of a goal, with its exact
+ *  distance, so that queries that are nearly solved already can be answered
+ *  with a lookup instead of a search.  Works for any board of up to 16
+ *  squares.
+ *
+ *  As in {@code EightPuzzleTable}, any goal is turned into the canonical
+ *  goal with its blank on the same square (tiles in reading order on the
+ *  other squares) by renaming the tiles, and the start is renamed the same
+ *  way with {@code PackedBoard.relabel}, so one table per board shape and
+ *  blank square is enough.  Each is built by a Breadth Search from the
+ *  canonical goal the first time it is needed; with a radius of 10 that is
+ *  a few thousand boards.
+ */
+public class NeighbourhoodTable {
+
+    public static final int RADIUS = 10;
+
+    //one table per width, height and blank square: packed canonical board -> distance.
+    private static final ConcurrentHashMap<Integer, HashMap<Long, Byte>> TABLES = new ConcurrentHashMap<>();
+
+    /**
+     * a shortest solution read off the table, stepping each time to a
+     * neighbour one move closer.
+     * @param start the start board by position index, 0 for the blank.
+     * @param goal the goal board by position index, 0 for the blank.
+     * @param width number of squares per row.
+     * @return the moves, or null if the start is more than RADIUS moves from the goal (or cannot reach it).
+     */
+    public static MoveSequence solve(int[] start, int[] goal, int width)
+    {
+        int size = goal.length;
+        int height = size / width;
+        HashMap<Long, Byte> table = tableFor(width, height, PackedBoard.blankOf(goal));
+        long state = PackedBoard.pack(PackedBoard.relabel(start, goal));
+        Byte found = table.get(state);
+        if (found == null)
+        {
+            return null;
+        }
+        MoveSequence moves = new MoveSequence();
+        int[] targets = new int[4];
+        int blank = PackedBoard.blankPosition(state, size);
+        for (int distance = found; distance > 0; distance--)
+        {
+            int count = PackedBoard.neighbours(blank, width, height, targets);
+            for (int i = 0; i < count; i++)
+            {
+                long next = PackedBoard.slide(state, blank, targets[i]);
+                Byte nextDistance = table.get(next);
+                if (nextDistance != null && nextDistance == distance - 1)
+                {
+                    moves.add(MoveSequence.directionOf(targets[i] - blank, width));
+                    state = next;
+                    blank = targets[i];
+                    break;
+                }
+            }
+        }
+        return moves;
+    }
+
+    private static HashMap<Long, Byte> tableFor(int width, int height, int blankSquare)
+    {
+        if (width * height > PackedBoard.MAX_SQUARES)
+        {
+            throw new IllegalArgumentException("The neighbourhood table holds at most " + PackedBoard.MAX_SQUARES + " squares");
+        }
+        return TABLES.computeIfAbsent((width * 32 + height) * 32 + blankSquare,
+                key -> build(width, height, blankSquare));
+    }
+
+    /**
+     * Breadth Search from the canonical goal out to RADIUS moves.
+     */
+    private static HashMap<Long, Byte> build(int width, int height, int blankSquare)
+    {
+        int size = width * height;
+        HashMap<Long, Byte> table = new HashMap<>();
+        long[] layer = {PackedBoard.pack(PackedBoard.canonicalGoal(size, blankSquare))};
+        int layerSize = 1;
+        table.put(layer[0], (byte) 0);
+        int[] targets = new int[4];
+        for (int distance = 1; distance <= RADIUS; distance++)
+        {
+            long[] next = new long[layerSize * 4];
+            int nextSize = 0;
+            for (int i = 0; i < layerSize; i++)
+            {
+                int blank = PackedBoard.blankPosition(layer[i], size);
+                int count = PackedBoard.neighbours(blank, width, height, targets);
+                for (int m = 0; m < count; m++)
+                {
+                    long child = PackedBoard.slide(layer[i], blank, targets[m]);
+                    if (table.putIfAbsent(child, (byte) distance) == null)
+                    {
+                        next[nextSize++] = child;
+                    }
+                }
+            }
+            layer = next;
+            layerSize = nextSize;
+        }
+        return table;
+    }
+}
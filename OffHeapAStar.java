@@ -0,0 +1,594 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  A* search whose frontier and closed list live outside the Java heap.
+ *  Boards are {@code PackedBoard} longs, and every state generated is one
+ *  16 byte record in a direct buffer:
+ *
+ *      bytes 0-7    packed board
+ *      bytes 8-11   index of the parent record (-1 for the start state)
+ *      bytes 12-13  depth, g(n)
+ *      byte  14     1 once the state has been expanded (on the closed list)
+ *      byte  15     heuristic, h(n)
+ *
+ *  An open-addressing hash table of record indices finds a board's record,
+ *  and the frontier is a binary heap of longs that pack f(n), depth and
+ *  record index so that comparing two entries is comparing two longs.  None
+ *  of this is visible to the garbage collector, so heap use stays flat no
+ *  matter how many states are generated.  Each direct buffer grows by
+ *  doubling up to 1 GB, which is room for about 67 million states.
+ *
+ *  Works for any board of up to 16 squares; {@code runSearch} adapts it to
+ *  the {@code Puzzle} based searches.
+ *
+ *  With partial expansion on (EPEA*), expanding a record only generates the
+ *  children whose f(n) equals the f it was queued with, found from
+ *  {@code BatchHeuristic}'s table of how each move changes the heuristic
+ *  without making the other children.  The record then goes back on the frontier with the next
+ *  larger child f, and is only closed once no children are left.  Children
+ *  that would never be popped are never stored.
+ *
+ *  A long search can write checkpoints: the used part of the record buffer
+ *  and of the frontier heap, copied to a file as they are, behind a short
+ *  header.  {@code resume} reads them back and rebuilds the hash index.
+ */
+public class OffHeapAStar {
+
+    public static final int MISPLACED = 3;  //same numbers as the Utility search types.
+    public static final int MANHATTAN = 4;
+
+    private static final int NODE_BYTES = 16;
+    private static final int INITIAL_NODES = 1 << 12;
+    static final int CHECKPOINT_MAGIC = 0x4f484131;    //"OHA1"
+    private static final int CHECKPOINT_HEADER_BYTES = 44;
+    private static final int CHECK_CLOCK_EVERY = 4096;        //expansions between looks at the clock.
+
+    private int width;
+    private int height;
+    private int size;
+    private int heuristic;
+    private long goalState;
+    private BatchHeuristic estimator;
+    private boolean partialExpansion = false;
+    private ExpansionTrace trace = null;
+    private Utility statistics;
+
+    private ByteBuffer nodes = ByteBuffer.allocateDirect(INITIAL_NODES * NODE_BYTES);
+    private int nodeCount = 0;
+    private ByteBuffer index = ByteBuffer.allocateDirect(INITIAL_NODES * 2 * 4);  //record index + 1 per slot, 0 = empty.
+    private int indexMask = INITIAL_NODES * 2 - 1;
+    private ByteBuffer heap = ByteBuffer.allocateDirect(INITIAL_NODES * 8);
+    private int heapSize = 0;
+    private int closedCount = 0;
+
+    private File checkpointFile = null;
+    private long checkpointIntervalNanos;
+    private long lastCheckpoint;
+    private long checkpointNanos = 0;
+    private int checkpointsWritten = 0;
+
+    /**
+     * @param width number of squares per row.
+     * @param height number of rows; width * height may be at most 16.
+     * @param goal the goal board by position index, 0 for the blank.
+     * @param heuristic MISPLACED or MANHATTAN.
+     * @param statistics receives the performance stats, including the off-heap bytes held.
+     */
+    public OffHeapAStar(int width, int height, int[] goal, int heuristic, Utility statistics)
+    {
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.heuristic = heuristic;
+        this.statistics = statistics;
+        goalState = PackedBoard.pack(goal);
+        estimator = new BatchHeuristic(width, height, goal, heuristic);
+    }
+
+    /**
+     * @param partial true for Enhanced Partial Expansion A*: generate only the children whose f
+     *                is the one their parent was queued with.
+     */
+    public void setPartialExpansion(boolean partial)
+    {
+        partialExpansion = partial;
+    }
+
+    /**
+     * @param trace receives every expansion from now on, null for none.
+     */
+    public void setTrace(ExpansionTrace trace)
+    {
+        this.trace = trace;
+    }
+
+    /**
+     * {@code Utility.runSearch} for A* with off-heap storage: runs the search
+     * on the packed form of {@code initState} and replays the moves found back
+     * into {@code Puzzle}s.
+     * @return the solution path in start-to-goal order, or null if there is none or the thread was interrupted.
+     */
+    public static ArrayList<Puzzle> runSearch(Puzzle initState, Utility statistics, boolean saveToDisk)
+    {
+        int heuristic = (statistics.getSearchType() == MISPLACED) ? MISPLACED : MANHATTAN;
+        OffHeapAStar search = new OffHeapAStar(3, 3, initState.getGoalNumbers(), heuristic, statistics);
+        MoveSequence moves = search.search(initState.getCurrentNumbers());
+        if (moves == null)
+        {
+            return null;
+        }
+        ArrayList<Puzzle> solutionList = moves.replay(initState);
+        statistics.reportSolution(solutionList, saveToDisk);
+        return solutionList;
+    }
+
+    /**
+     * @param start the start board by position index, 0 for the blank.
+     * @return the moves of a shortest solution, or null if there is none or the thread was interrupted.
+     */
+    public MoveSequence search(int[] start)
+    {
+        long startState = PackedBoard.pack(start);
+        int startEstimate = estimator.estimate(startState);
+        push(addNode(startState, -1, 0, startEstimate), startEstimate);
+        return continueSearch();
+    }
+
+    /**
+     * runs the search from where it is: from the start state after
+     * {@code search} has queued it, or from a checkpoint after {@code resume}.
+     * @return the moves of a shortest solution, or null if there is none or the thread was interrupted.
+     */
+    public MoveSequence continueSearch()
+    {
+        int[] targets = new int[4];
+        int sinceClock = 0;
+        lastCheckpoint = System.nanoTime();
+
+        while (heapSize > 0)
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                return null;
+            }
+            if (checkpointFile != null && ++sinceClock == CHECK_CLOCK_EVERY)
+            {
+                sinceClock = 0;
+                if (System.nanoTime() - lastCheckpoint >= checkpointIntervalNanos)
+                {
+                    writeCheckpoint();
+                }
+            }
+
+            long entry = pop();
+            int node = (int) entry;
+            int bound = (int) (entry >>> 48);  //f(n), or with partial expansion the f of the children still to make.
+            int depth = 0xffff - (int) ((entry >>> 32) & 0xffff);
+            if (isClosed(node) || depthOf(node) != depth)
+            {
+                //expanded already, or a cheaper copy was queued after this entry.
+                statistics.addToStaleEntriesSkipped();
+                continue;
+            }
+
+            long state = stateOf(node);
+            if (trace != null)
+            {
+                trace.record(state, depth, estimateOf(node), node, nodes.getInt(node * NODE_BYTES + 8));
+            }
+            if (state == goalState)
+            {
+                statistics.updateOffHeapBytes(getOffHeapBytes());
+                if (checkpointFile != null)
+                {
+                    checkpointFile.delete();    //nothing left to resume.
+                }
+                return buildMoves(node);
+            }
+
+            int blank = PackedBoard.blankPosition(state, size);
+            int moves = PackedBoard.neighbours(blank, width, height, targets);
+            int nextBound = Integer.MAX_VALUE;
+            for (int i = 0; i < moves; i++)
+            {
+                int childDepth = depth + 1;
+                int childEstimate = estimator.childEstimate(state, estimateOf(node), blank, targets[i]);
+                if (partialExpansion && childDepth + childEstimate != bound)
+                {
+                    if (childDepth + childEstimate > bound)
+                    {
+                        nextBound = Math.min(nextBound, childDepth + childEstimate);
+                    }
+                    continue;   //smaller ones were made on an earlier visit.
+                }
+                long child = PackedBoard.slide(state, blank, targets[i]);
+                statistics.addToNodesExpanded();
+
+                int existing = find(child);
+                if (existing >= 0)
+                {
+                    if (depthOf(existing) <= childDepth
+                            || (isClosed(existing) && !statistics.isReopenClosedNodes()))
+                    {
+                        statistics.addToDuplicatesPruned();
+                        continue;
+                    }
+                    if (isClosed(existing))
+                    {
+                        setClosed(existing, false);
+                        closedCount--;
+                        statistics.addToNodesReopened();
+                    }
+                    nodes.putInt(existing * NODE_BYTES + 8, node);
+                    nodes.putShort(existing * NODE_BYTES + 12, (short) childDepth);
+                    push(existing, childDepth + estimateOf(existing));
+                } else
+                {
+                    push(addNode(child, node, childDepth, childEstimate), childDepth + childEstimate);
+                }
+                statistics.setTreeDepth(childDepth);
+            }
+            if (nextBound != Integer.MAX_VALUE)
+            {
+                push(node, nextBound);     //back on the frontier for its remaining children.
+            } else
+            {
+                setClosed(node, true);
+                closedCount++;
+            }
+            statistics.updateFrontierListLength(heapSize);
+            statistics.updateClosedListLength(closedCount);
+            statistics.updateOffHeapBytes(getOffHeapBytes());
+        }
+        return null;
+    }
+
+    /**
+     * turns on checkpointing: while searching, the records and the frontier
+     * are written to {@code file} every {@code intervalMillis}, replacing the
+     * previous checkpoint.  the file is deleted once a solution is found.
+     */
+    public void setCheckpoint(File file, long intervalMillis)
+    {
+        checkpointFile = file;
+        checkpointIntervalNanos = intervalMillis * 1000000L;
+    }
+
+    /**
+     * reads a checkpoint written by a search with {@code setCheckpoint};
+     * call {@code continueSearch()} on the result.  it keeps writing
+     * checkpoints to the same file at the given interval.
+     * @param statistics receives the performance stats, starting from the nodes expanded before the checkpoint.
+     * @throws IOException if the file cannot be read or is not an off-heap A* checkpoint.
+     */
+    public static OffHeapAStar resume(File file, long intervalMillis, Utility statistics) throws IOException
+    {
+        try (FileInputStream input = new FileInputStream(file); FileChannel channel = input.getChannel())
+        {
+            ByteBuffer header = ByteBuffer.allocate(CHECKPOINT_HEADER_BYTES);
+            readFully(channel, header);
+            header.flip();
+            if (header.getInt() != CHECKPOINT_MAGIC)
+            {
+                throw new IOException(file + " is not an off-heap A* checkpoint");
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            int heuristic = header.getInt();
+            boolean partial = header.getInt() != 0;
+            long goalState = header.getLong();
+            int nodeCount = header.getInt();
+            int closedCount = header.getInt();
+            int heapSize = header.getInt();
+            statistics.addToNodesExpanded(header.getInt());
+
+            OffHeapAStar search = new OffHeapAStar(width, height, PackedBoard.unpack(goalState, width * height),
+                    heuristic, statistics);
+            search.setCheckpoint(file, intervalMillis);
+            search.setPartialExpansion(partial);
+            search.nodes = ByteBuffer.allocateDirect(capacityFor(nodeCount) * NODE_BYTES);
+            search.nodes.limit(nodeCount * NODE_BYTES);
+            readFully(channel, search.nodes);
+            search.nodes.clear();
+            search.heap = ByteBuffer.allocateDirect(capacityFor(heapSize) * 8);
+            search.heap.limit(heapSize * 8);
+            readFully(channel, search.heap);
+            search.heap.clear();
+            search.nodeCount = nodeCount;
+            search.closedCount = closedCount;
+            search.heapSize = heapSize;
+
+            int slots = capacityFor(nodeCount) * 2;
+            search.index = ByteBuffer.allocateDirect(slots * 4);
+            search.indexMask = slots - 1;
+            for (int i = 0; i < nodeCount; i++)
+            {
+                search.placeInIndex(search.stateOf(i), i);
+            }
+            return search;
+        }
+    }
+
+    /**
+     * @return the smallest buffer size in records, doubling from the initial one, that holds {@code count}.
+     */
+    private static int capacityFor(int count)
+    {
+        int capacity = INITIAL_NODES;
+        while (capacity < count)
+        {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer) < 0)
+            {
+                throw new IOException("Checkpoint ends early");
+            }
+        }
+    }
+
+    /**
+     * writes the header, the used records and the used part of the heap to a
+     * temporary file, then moves it over the checkpoint, so a crash while
+     * writing leaves the old one intact.
+     */
+    private void writeCheckpoint()
+    {
+        long started = System.nanoTime();
+        File temporary = new File(checkpointFile.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temporary); FileChannel channel = output.getChannel())
+        {
+            ByteBuffer header = ByteBuffer.allocate(CHECKPOINT_HEADER_BYTES);
+            header.putInt(CHECKPOINT_MAGIC).putInt(width).putInt(height).putInt(heuristic)
+                    .putInt(partialExpansion ? 1 : 0).putLong(goalState);
+            header.putInt(nodeCount).putInt(closedCount).putInt(heapSize).putInt(statistics.getTotalNodesExpanded());
+            header.flip();
+            writeFully(channel, header);
+            writeFully(channel, used(nodes, nodeCount * NODE_BYTES));
+            writeFully(channel, used(heap, heapSize * 8));
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+            return;
+        }
+        try
+        {
+            Files.move(temporary.toPath(), checkpointFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointsWritten++;
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        checkpointNanos += System.nanoTime() - started;
+        lastCheckpoint = System.nanoTime();
+    }
+
+    private static ByteBuffer used(ByteBuffer buffer, int bytes)
+    {
+        ByteBuffer view = buffer.duplicate();
+        view.clear();
+        view.limit(bytes);
+        return view;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+    public int getCheckpointsWritten()
+    {
+        return checkpointsWritten;
+    }
+
+    /**
+     * @return total time spent writing checkpoints, to compare with the search time.
+     */
+    public long getCheckpointMillis()
+    {
+        return checkpointNanos / 1000000;
+    }
+
+    /**
+     * @return the memory currently reserved outside the heap for the records, the index and the frontier.
+     */
+    public long getOffHeapBytes()
+    {
+        return (long) nodes.capacity() + index.capacity() + heap.capacity();
+    }
+
+    private MoveSequence buildMoves(int goalNode)
+    {
+        return PackedBoard.movesAlong(goalNode, node -> nodes.getInt(node * NODE_BYTES + 8), this::stateOf, width, size);
+    }
+
+    // ---- records -------------------------------------------------------
+
+    private int addNode(long state, int parent, int depth, int estimate)
+    {
+        if ((nodeCount + 1) * NODE_BYTES > nodes.capacity())
+        {
+            nodes = grow(nodes);
+        }
+        int node = nodeCount++;
+        int offset = node * NODE_BYTES;
+        nodes.putLong(offset, state);
+        nodes.putInt(offset + 8, parent);
+        nodes.putShort(offset + 12, (short) depth);
+        nodes.put(offset + 14, (byte) 0);
+        nodes.put(offset + 15, (byte) estimate);
+        insertIndex(state, node);
+        return node;
+    }
+
+    private long stateOf(int node)
+    {
+        return nodes.getLong(node * NODE_BYTES);
+    }
+
+    private int depthOf(int node)
+    {
+        return nodes.getShort(node * NODE_BYTES + 12) & 0xffff;
+    }
+
+    private boolean isClosed(int node)
+    {
+        return nodes.get(node * NODE_BYTES + 14) != 0;
+    }
+
+    private void setClosed(int node, boolean closed)
+    {
+        nodes.put(node * NODE_BYTES + 14, (byte) (closed ? 1 : 0));
+    }
+
+    private int estimateOf(int node)
+    {
+        return nodes.get(node * NODE_BYTES + 15) & 0xff;
+    }
+
+    // ---- hash index from packed board to record ------------------------
+
+    private int find(long state)
+    {
+        for (int slot = PackedBoard.hash(state) & indexMask; ; slot = (slot + 1) & indexMask)
+        {
+            int entry = index.getInt(slot * 4);
+            if (entry == 0)
+            {
+                return -1;
+            }
+            if (stateOf(entry - 1) == state)
+            {
+                return entry - 1;
+            }
+        }
+    }
+
+    private void insertIndex(long state, int node)
+    {
+        //keep the table at most half full.
+        if (nodeCount * 2 > indexMask + 1)
+        {
+            int slots = (indexMask + 1) * 2;
+            index = ByteBuffer.allocateDirect(slots * 4);
+            indexMask = slots - 1;
+            for (int i = 0; i < nodeCount; i++)
+            {
+                if (i != node)
+                {
+                    placeInIndex(stateOf(i), i);
+                }
+            }
+        }
+        placeInIndex(state, node);
+    }
+
+    private void placeInIndex(long state, int node)
+    {
+        int slot = PackedBoard.hash(state) & indexMask;
+        while (index.getInt(slot * 4) != 0)
+        {
+            slot = (slot + 1) & indexMask;
+        }
+        index.putInt(slot * 4, node + 1);
+    }
+
+    // ---- frontier heap ---------------------------------------------------
+
+    /**
+     * queues a record with its current depth.  entries order by f, then
+     * by deeper first, then by record index.
+     * @param f f(n), or with partial expansion the f of the children to make when it is popped.
+     */
+    private void push(int node, long f)
+    {
+        int depth = depthOf(node);
+        long entry = (f << 48) | ((long) (0xffff - depth) << 32) | node;
+
+        if ((heapSize + 1) * 8 > heap.capacity())
+        {
+            heap = grow(heap);
+        }
+        int position = heapSize++;
+        while (position > 0)
+        {
+            int parent = (position - 1) / 2;
+            long parentEntry = heap.getLong(parent * 8);
+            if (parentEntry <= entry)
+            {
+                break;
+            }
+            heap.putLong(position * 8, parentEntry);
+            position = parent;
+        }
+        heap.putLong(position * 8, entry);
+    }
+
+    private long pop()
+    {
+        long top = heap.getLong(0);
+        long last = heap.getLong(--heapSize * 8);
+        int position = 0;
+        while (true)
+        {
+            int child = position * 2 + 1;
+            if (child >= heapSize)
+            {
+                break;
+            }
+            long childEntry = heap.getLong(child * 8);
+            if (child + 1 < heapSize && heap.getLong((child + 1) * 8) < childEntry)
+            {
+                child++;
+                childEntry = heap.getLong(child * 8);
+            }
+            if (last <= childEntry)
+            {
+                break;
+            }
+            heap.putLong(position * 8, childEntry);
+            position = child;
+        }
+        if (heapSize > 0)
+        {
+            heap.putLong(position * 8, last);
+        }
+        return top;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer)
+    {
+        long capacity = (long) buffer.capacity() * 2;
+        if (capacity > Integer.MAX_VALUE)
+        {
+            throw new IllegalStateException("Off-heap buffer cannot grow past 2 GB");
+        }
+        ByteBuffer larger = ByteBuffer.allocateDirect((int) capacity);
+        ByteBuffer source = buffer.duplicate();
+        source.clear();
+        larger.put(source);
+        larger.clear();
+        return larger;
+    }
+}
@@ -0,0 +1,219 @@
+import java.util.ArrayList;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Helper methods for boards packed into a single long, four bits per
+ *  square, the same layout as {@code Puzzle.getStateKey()}: the number on
+ *  square i is held in bits 4i to 4i+3.  Any board of up to 16 squares fits,
+ *  so the 15-puzzle can be searched without building {@code Puzzle} objects.
+ */
+public class PackedBoard {
+
+    public static final int MAX_SQUARES = 16;
+
+    /**
+     * @param numbers the number on each square by position index, 0 for the blank.
+     * @return the packed board.
+     */
+    public static long pack(int[] numbers)
+    {
+        if (numbers.length > MAX_SQUARES)
+        {
+            throw new IllegalArgumentException("A packed board holds at most " + MAX_SQUARES + " squares");
+        }
+        long state = 0;
+        for (int i = 0; i < numbers.length; i++)
+        {
+            state |= ((long) numbers[i]) << (4 * i);
+        }
+        return state;
+    }
+
+    /**
+     * @param size number of squares on the board.
+     * @return the number on each square by position index.
+     */
+    public static int[] unpack(long state, int size)
+    {
+        int[] numbers = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            numbers[i] = get(state, i);
+        }
+        return numbers;
+    }
+
+    public static int get(long state, int position)
+    {
+        return (int) (state >>> (4 * position)) & 0xf;
+    }
+
+    /**
+     * @param size number of squares on the board.
+     * @return the position of the blank (0), or -1 if there is none.
+     */
+    public static int blankPosition(long state, int size)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (get(state, i) == 0)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * slides the blank from {@code blank} to the adjacent {@code target}
+     * square, moving the tile on {@code target} into the blank's old place.
+     */
+    public static long slide(long state, int blank, int target)
+    {
+        long tile = (state >>> (4 * target)) & 0xf;
+        state &= ~(0xfL << (4 * target));
+        return state | (tile << (4 * blank));
+    }
+
+    /**
+     * the squares the blank can slide to, the same moves
+     * {@code PuzzleSquare.getMoves()} lists for a 3x3 board.
+     * @param blank position of the blank.
+     * @param width number of squares per row.
+     * @param height number of rows.
+     * @param targets filled with the reachable positions.
+     * @return how many entries of {@code targets} were filled (2 to 4).
+     */
+    public static int neighbours(int blank, int width, int height, int[] targets)
+    {
+        int count = 0;
+        int row = blank / width;
+        int col = blank % width;
+        if (row > 0)
+        {
+            targets[count++] = blank - width;
+        }
+        if (row < height - 1)
+        {
+            targets[count++] = blank + width;
+        }
+        if (col > 0)
+        {
+            targets[count++] = blank - 1;
+        }
+        if (col < width - 1)
+        {
+            targets[count++] = blank + 1;
+        }
+        return count;
+    }
+
+    /**
+     * renames the tiles of {@code board} the way that turns {@code goal} into
+     * the canonical goal with the same blank square, so that boards with any
+     * goal can share tables built for the canonical goals.
+     * @return the renamed board.
+     */
+    static int[] relabel(int[] board, int[] goal)
+    {
+        int[] canonicalGoal = canonicalGoal(goal.length, blankOf(goal));
+        int[] newName = new int[goal.length];
+        for (int square = 0; square < goal.length; square++)
+        {
+            newName[goal[square]] = canonicalGoal[square];
+        }
+        int[] renamed = new int[board.length];
+        for (int square = 0; square < board.length; square++)
+        {
+            renamed[square] = newName[board[square]];
+        }
+        return renamed;
+    }
+
+    /**
+     * @param size number of squares on the board.
+     * @return tiles 1 to size - 1 in reading order with the blank on {@code blankSquare}.
+     */
+    static int[] canonicalGoal(int size, int blankSquare)
+    {
+        int[] goal = new int[size];
+        int tile = 1;
+        for (int square = 0; square < size; square++)
+        {
+            goal[square] = (square == blankSquare) ? 0 : tile++;
+        }
+        return goal;
+    }
+
+    /**
+     * @return the position of the blank (0) on an unpacked board.
+     */
+    static int blankOf(int[] board)
+    {
+        for (int i = 0; i < board.length; i++)
+        {
+            if (board[i] == 0)
+            {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Board has no blank");
+    }
+
+    /**
+     * spreads the few bits that differ between neighbouring boards over the
+     * whole int (the first half of the MurmurHash3 finaliser), for the
+     * open-addressing indexes of the packed searches.
+     */
+    static int hash(long state)
+    {
+        state ^= state >>> 33;
+        state *= 0xff51afd7ed558ccdL;
+        state ^= state >>> 33;
+        return (int) state;
+    }
+
+    /**
+     * the moves of a path the packed searches stored as boards with the
+     * index of their parent, read back from its last board.
+     * @param last the index of the last board on the path.
+     * @param parentOf the index of a board's parent, negative for the start.
+     * @param stateOf the packed board at an index.
+     * @param size number of squares on the board.
+     */
+    static MoveSequence movesAlong(int last, IntUnaryOperator parentOf, IntToLongFunction stateOf, int width, int size)
+    {
+        ArrayList<Integer> blanks = new ArrayList<>();
+        for (int node = last; node >= 0; node = parentOf.applyAsInt(node))
+        {
+            blanks.add(blankPosition(stateOf.applyAsLong(node), size));
+        }
+        MoveSequence moves = new MoveSequence();
+        for (int i = blanks.size() - 1; i > 0; i--)
+        {
+            moves.add(MoveSequence.directionOf(blanks.get(i - 1) - blanks.get(i), width));
+        }
+        return moves;
+    }
+
+    /**
+     * formats a packed board as rows of numbers, for debugging.
+     */
+    public static String toString(long state, int width, int height)
+    {
+        StringBuilder text = new StringBuilder();
+        for (int row = 0; row < height; row++)
+        {
+            for (int col = 0; col < width; col++)
+            {
+                text.append(String.format("%3d", get(state, row * width + col)));
+            }
+            text.append("\n");
+        }
+        return text.toString();
+    }
+}
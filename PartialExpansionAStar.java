@@ -0,0 +1,67 @@
+import java.util.ArrayList;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Enhanced Partial Expansion A* (EPEA*).  Plain A* makes and queues all
+ *  two to four children of every state it expands, though most of them have
+ *  an f(n) too high ever to be taken off the frontier.  EPEA* only makes the
+ *  children whose f(n) equals the f the parent was queued with, and puts
+ *  the parent back with the next larger child f.  Which moves qualify is
+ *  read from a table of how each move changes the heuristic, so the other
+ *  children are never built.  The solution is as short as A*'s.
+ *
+ *  The search runs on {@code OffHeapAStar}'s packed lists.
+ */
+public class PartialExpansionAStar {
+
+    private Puzzle currentState;
+    private ArrayList<Puzzle> solutionList = new ArrayList<>();
+    private Utility statisticsGatherer;
+    private boolean saveToDisk = true;
+    private int heuristic;
+
+    /**
+     * Takes an initial gamestate and finds solution to goal by EPEA*.
+     * @param initState initial board state; Puzzle objects keep their own reference to goal state
+     * @param heuristic 3 for the Misplaced Tile heuristic, 4 for Manhattan (as in the Utility search types).
+     * @param saveToDisk convenience flag to turn on/off saving search results to disk.
+     */
+    public PartialExpansionAStar(Puzzle initState, int heuristic, boolean saveToDisk)
+    {
+        currentState = initState;
+        this.heuristic = heuristic;
+        this.saveToDisk = saveToDisk;
+        statisticsGatherer = new Utility((heuristic == 3) ? 13 : 14);
+    }
+
+    /**
+    Runs the given search method and returns the solution path in
+    an ArrayList, in order of first move to last move.  Returns null if
+    there is no solution or the thread was interrupted.
+    */
+    public ArrayList<Puzzle> Search()
+    {
+        OffHeapAStar search = new OffHeapAStar(3, 3, currentState.getGoalNumbers(),
+                (heuristic == 3) ? OffHeapAStar.MISPLACED : OffHeapAStar.MANHATTAN, statisticsGatherer);
+        search.setPartialExpansion(true);
+        MoveSequence moves = search.search(currentState.getCurrentNumbers());
+        if (moves == null)
+        {
+            return null;
+        }
+        solutionList = moves.replay(currentState);
+        statisticsGatherer.reportSolution(solutionList, saveToDisk);
+        return solutionList;
+    }
+
+    /**
+     * @return the performance stats of the last {@code Search()}; the ASCII
+     * report is only drawn when saving to disk.
+     */
+    public Utility getStatistics()
+    {
+        return statisticsGatherer;
+    }
+}
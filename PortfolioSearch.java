@@ -0,0 +1,187 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Races several search methods against each other on the same puzzle, one
+ *  thread each, and returns the first solution that meets the requested
+ *  optimality guarantee.  The remaining searches are cancelled as soon as a
+ *  winner is known.  Which search wins is counted for the lifetime of the
+ *  program (the service shows the win rates on /metrics) and every race is
+ *  appended to a file, whether or not the search saves its report, so the
+ *  choice of searches can be tuned from the queries actually answered.
+ */
+public class PortfolioSearch {
+
+    private static final String RESULTS_FILE_NAME = "Portfolio Results.csv";
+
+    //races run and races won per search method, across every PortfolioSearch in this program.
+    private static final ConcurrentHashMap<String, AtomicInteger> racesRun = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AtomicInteger> racesWon = new ConcurrentHashMap<>();
+
+    private Puzzle currentState;
+    private ArrayList<Puzzle> solutionList = new ArrayList<>();
+    private boolean requireOptimal;
+    private boolean saveToDisk = true;
+    private String winnerName = null;
+
+    private ArrayList<String> engineNames = new ArrayList<>();
+    private ArrayList<Boolean> engineOptimal = new ArrayList<>();
+    private ArrayList<Callable<ArrayList<Puzzle>>> engines = new ArrayList<>();
+
+    /**
+     * Takes an initial gamestate and races Greedy Best First, Weighted A*,
+     * A* with Manhattan and IDA* to the goal.
+     * @param initState initial board state; Puzzle objects keep their own reference to goal state
+     * @param requireOptimal if true, only solutions from searches that always find the
+     *                       shortest path (A* with Manhattan and IDA*) are accepted.
+     * @param saveToDisk convenience flag to turn on/off saving search results to disk.
+     */
+    public PortfolioSearch(Puzzle initState, boolean requireOptimal, boolean saveToDisk)
+    {
+        currentState = initState;
+        this.requireOptimal = requireOptimal;
+        this.saveToDisk = saveToDisk;
+
+        //the searches themselves never save; only the winner is recorded, below.
+        if (!requireOptimal)
+        {
+            addEngine("Greedy Best First", false, () -> new GreedyBestFirst(initState, false).Search());
+            addEngine("Weighted A*", false, () -> new WeightedAStar(initState, 2.0, false).Search());
+        }
+        addEngine("A* Manhattan", true, () -> new ManhattanAStar(initState, false).Search());
+        addEngine("IDA*", true, () -> new IDAStar(initState, false).Search());
+    }
+
+    private void addEngine(String name, boolean optimal, Callable<ArrayList<Puzzle>> engine)
+    {
+        engineNames.add(name);
+        engineOptimal.add(optimal);
+        engines.add(engine);
+    }
+
+    /**
+    Runs every search method at once and returns the winning solution path in
+    an ArrayList, in order of first move to last move.
+    */
+    public ArrayList<Puzzle> Search()
+    {
+        long startTime = System.nanoTime();
+        //one thread per engine even on fewer cores, so they really race rather than queue
+        //and the win rates measure speed, not the order they were submitted in.
+        ExecutorService executor = Executors.newFixedThreadPool(engines.size());
+        ExecutorCompletionService<ArrayList<Puzzle>> completion = new ExecutorCompletionService<>(executor);
+
+        ArrayList<Future<ArrayList<Puzzle>>> futures = new ArrayList<>();
+        for (Callable<ArrayList<Puzzle>> engine : engines)
+        {
+            futures.add(completion.submit(engine));
+        }
+        for (String name : engineNames)
+        {
+            racesRun.computeIfAbsent(name, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        solutionList = null;
+        try
+        {
+            for (int i = 0; i < futures.size() && solutionList == null; i++)
+            {
+                Future<ArrayList<Puzzle>> finished = completion.take();
+                int engineIndex = futures.indexOf(finished);
+                ArrayList<Puzzle> result;
+                try
+                {
+                    result = finished.get();
+                } catch (ExecutionException e)
+                {
+                    e.printStackTrace();
+                    continue;
+                }
+                if (result != null && (!requireOptimal || engineOptimal.get(engineIndex)))
+                {
+                    solutionList = result;
+                    winnerName = engineNames.get(engineIndex);
+                }
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            //interrupts the searches still running; each one checks for it between expansions.
+            executor.shutdownNow();
+        }
+
+        if (winnerName != null)
+        {
+            racesWon.computeIfAbsent(winnerName, k -> new AtomicInteger()).incrementAndGet();
+            long elapsedMillis = (System.nanoTime() - startTime) / 1000000L;
+            if (saveToDisk)
+            {
+                System.out.println("Portfolio winner: " + winnerName + " after " + elapsedMillis + " ms\n");
+            }
+            saveResult(winnerName, elapsedMillis, solutionList.size());
+        }
+        return solutionList;
+    }
+
+    public String getWinnerName()
+    {
+        return winnerName;
+    }
+
+    /**
+     * the fraction of races each search method has won since the program started.
+     * @return search method name mapped to races won divided by races run.
+     */
+    public static Map<String, Double> getWinRates()
+    {
+        TreeMap<String, Double> winRates = new TreeMap<>();
+        for (Map.Entry<String, AtomicInteger> entry : racesRun.entrySet())
+        {
+            AtomicInteger won = racesWon.get(entry.getKey());
+            int wins = (won == null) ? 0 : won.get();
+            winRates.put(entry.getKey(), (double) wins / entry.getValue().get());
+        }
+        return winRates;
+    }
+
+    /**
+     * appends one line per race to the results file: the goal requirement, the winner,
+     * its time and its solution length.  races may finish on several threads at once.
+     */
+    private void saveResult(String winner, long elapsedMillis, int length)
+    {
+        synchronized (RESULTS_FILE_NAME)
+        {
+            appendResult(winner, elapsedMillis, length);
+        }
+    }
+
+    private void appendResult(String winner, long elapsedMillis, int length)
+    {
+        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(RESULTS_FILE_NAME, true)))
+        {
+            bufferedWriter.write((requireOptimal ? "optimal" : "any") + "," + winner + ","
+                    + elapsedMillis + "," + length + "\n");
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+}
@@ -129,6 +129,48 @@ public class Puzzle implements Cloneable{
         return new int[]{row, col};
     }
 
+    /**
+     * packs the current tile numbers into a single long, four bits per tile,
+     * so that a game state can be used as a key for hash lookups instead of
+     * comparing it square by square against every entry of a list.
+     * @return the packed board; two states are equal exactly when their keys are equal.
+     */
+    public long getStateKey()
+    {
+        long key = 0;
+        for (int i = 0; i < internalState.length; i++)
+        {
+            key |= ((long) internalState[i].getCurrentNumber()) << (4 * i);
+        }
+        return key;
+    }
+
+    /**
+     * @return the numbers currently shown on the board, by position index, with 0 for the blank.
+     */
+    public int[] getCurrentNumbers()
+    {
+        int[] numbers = new int[internalState.length];
+        for (int i = 0; i < internalState.length; i++)
+        {
+            numbers[i] = internalState[i].getCurrentNumber();
+        }
+        return numbers;
+    }
+
+    /**
+     * @return the numbers each square needs to show in the goal state, by position index.
+     */
+    public int[] getGoalNumbers()
+    {
+        int[] numbers = new int[internalState.length];
+        for (int i = 0; i < internalState.length; i++)
+        {
+            numbers[i] = internalState[i].getRequiredNumber();
+        }
+        return numbers;
+    }
+
     public int getPathCostManhattan() {
         return pathCostManhattan;
     }
@@ -151,14 +193,18 @@ public class Puzzle implements Cloneable{
             int startPosition = internalState[i].getCurrentNumber();
             int goalPosition = internalState[i].getRequiredNumber();
 
-            if( (startPosition != goalPosition) )
+            // the blank is not a tile, so it does not count towards the distance;
+            // counting it would let the heuristic overestimate.
+            if( (startPosition != goalPosition) && startPosition != 0 )
             {
                 // our current tile's number does not match what its goal number should be;
                 // so we need to find the position index where the current tile needs to end up at.
+                // the goal numbers live on the squares themselves, so they are available
+                // even before createStateStrings() has been called.
                 int goalIndex = 0;
-                for(int j = 0; j < goalStateString.size(); j++)
+                for(int j = 0; j < internalState.length; j++)
                 {
-                    if(goalStateString.get(j).equals(startPosition))
+                    if(internalState[j].getRequiredNumber() == startPosition)
                     {
                         goalIndex = j;
                     }
@@ -0,0 +1,366 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Simplified Memory-bounded A* (SMA*).  Searches like A*, but never holds
+ *  more than a fixed number of game states.  When that budget is reached,
+ *  the worst leaf (highest f(n), shallowest first) is dropped and its f(n)
+ *  is remembered by its parent, which goes back on the frontier so the leaf
+ *  can be regenerated later if it turns out to be worth it.  f(n) values are
+ *  backed up from children to parents, so the search still returns the
+ *  shortest solution whenever that solution's path fits within the budget.
+ *
+ *  A child is not generated while the same board is already in memory at
+ *  the same or a smaller depth; the copy in memory (or the f(n) its parent
+ *  remembers for it) already stands for every path through that board.
+ */
+public class SMAStar {
+
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    private Puzzle currentState;
+    private ArrayList<Puzzle> solutionList = new ArrayList<>();
+    private Utility statisticsGatherer;
+    private boolean saveToDisk = true;
+    private int nodeBudget;
+    private int heuristic;
+
+    private int nodesInMemory = 0;
+    private int nodesForgotten = 0;
+    private long nextId = 0;
+
+    //the shallowest copy in memory of each board, by Puzzle.getStateKey().
+    private HashMap<Long, Node> inMemory = new HashMap<>();
+
+    /**
+     * one game state held in memory, with room for the children it has
+     * generated and the backed-up f(n) of the children it has forgotten.
+     */
+    private class Node {
+        Puzzle state;
+        Node parent;
+        int parentMove;     //index of the move from the parent that led here.
+        int depth;
+        int cost;           //f(n), only ever raised.
+        long id = nextId++; //breaks ties so the frontier treats equal nodes as different.
+        Node[] children;
+        int[] forgottenCost;
+
+        Node(Puzzle state, Node parent, int parentMove, int cost)
+        {
+            this.state = state;
+            this.parent = parent;
+            this.parentMove = parentMove;
+            this.depth = state.getDepth();
+            this.cost = cost;
+            int moves = state.getBlankSquare().getMoves().length;
+            children = new Node[moves];
+            forgottenCost = new int[moves];
+            java.util.Arrays.fill(forgottenCost, -1);
+        }
+
+        boolean isLeaf()
+        {
+            for (Node child : children)
+            {
+                if (child != null)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    //lowest f(n) first, deepest first among equals.
+    private TreeSet<Node> frontier = new TreeSet<>((a, b) -> {
+        if (a.cost != b.cost)
+        {
+            return Integer.compare(a.cost, b.cost);
+        }
+        if (a.depth != b.depth)
+        {
+            return Integer.compare(b.depth, a.depth);
+        }
+        return Long.compare(a.id, b.id);
+    });
+
+    //the frontier nodes that may be dropped: leaves other than the start state, in the same order.
+    private TreeSet<Node> leaves = new TreeSet<>(frontier.comparator());
+
+    /**
+     * Takes an initial gamestate and finds solution to goal by SMA* search.
+     * @param initState initial board state; Puzzle objects keep their own reference to goal state
+     * @param nodeBudget the most game states held in memory between expansions; expanding
+     *                   a state may go over it by up to 4 until the worst leaves are dropped.
+     * @param heuristic 3 for the Misplaced Tile heuristic, 4 for Manhattan (as in the Utility search types).
+     * @param saveToDisk convenience flag to turn on/off saving search results to disk.
+     */
+    public SMAStar(Puzzle initState, int nodeBudget, int heuristic, boolean saveToDisk)
+    {
+        if (nodeBudget < 2)
+        {
+            throw new IllegalArgumentException("Node budget must be at least 2, was " + nodeBudget);
+        }
+        currentState = initState;
+        this.nodeBudget = nodeBudget;
+        this.heuristic = heuristic;
+        this.saveToDisk = saveToDisk;
+        statisticsGatherer = new Utility((heuristic == 3) ? 8 : 9);
+    }
+
+    /**
+    Runs the given search method and returns the solution path in
+    an ArrayList, in order of first move to last move.  Returns null if no
+    solution fits within the node budget, or the thread was interrupted.
+    */
+    public ArrayList<Puzzle> Search()
+    {
+        Node root = new Node(currentState, null, -1, estimate(currentState));
+        queue(root);
+        inMemory.put(currentState.getStateKey(), root);
+        nodesInMemory = 1;
+
+        while (!frontier.isEmpty())
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                return null;
+            }
+
+            Node best = frontier.first();
+            if (best.cost == INFINITE)
+            {
+                return null; //every remaining path is longer than the budget allows.
+            }
+            if (Utility.isGoalState(best.state))
+            {
+                solutionList = Utility.buildSolutionPath(best.state);
+                statisticsGatherer.reportSolution(solutionList, saveToDisk);
+                return solutionList;
+            }
+
+            //once expanded, a node only comes back to the frontier when one of its children is forgotten.
+            dequeue(best);
+            expand(best);
+            backUp(discardDeadEnds(best));
+
+            while (nodesInMemory > nodeBudget)
+            {
+                forgetWorstLeaf(best);
+            }
+            statisticsGatherer.updateFrontierListLength(frontier.size());
+            statisticsGatherer.updateClosedListLength(nodesInMemory - frontier.size());
+        }
+        return null;
+    }
+
+    /**
+     * generates every child of {@code node} that is not in memory, except
+     * boards already in memory at the same or a smaller depth (which includes
+     * the states on the path to it).  a regenerated child starts from the
+     * f(n) it had when it was forgotten.
+     */
+    private void expand(Node node)
+    {
+        int[] moves = node.state.getBlankSquare().getMoves();
+        for (int i = 0; i < moves.length; i++)
+        {
+            if (node.children[i] != null)
+            {
+                continue;
+            }
+            Puzzle tempChild = Utility.createChild(node.state, moves[i]);
+            statisticsGatherer.addToNodesExpanded();
+            Node existing = inMemory.get(tempChild.getStateKey());
+            if (existing != null && existing.depth <= tempChild.getDepth())
+            {
+                node.forgottenCost[i] = -1;
+                statisticsGatherer.addToDuplicatesPruned();
+                continue;
+            }
+
+            int cost;
+            if (!Utility.isGoalState(tempChild) && tempChild.getDepth() >= nodeBudget - 1)
+            {
+                //the path to any goal below this state would not fit in memory.
+                cost = INFINITE;
+            } else
+            {
+                //a child is never cheaper than its parent (pathmax).
+                cost = Math.max(node.cost, tempChild.getDepth() + estimate(tempChild));
+            }
+            if (node.forgottenCost[i] >= 0)
+            {
+                cost = Math.max(cost, node.forgottenCost[i]);
+                node.forgottenCost[i] = -1;
+            }
+
+            Node child = new Node(tempChild, node, i, cost);
+            node.children[i] = child;
+            queue(child);
+            inMemory.put(tempChild.getStateKey(), child);
+            nodesInMemory++;
+            statisticsGatherer.setTreeDepth(child.depth);
+        }
+    }
+
+    /**
+     * raises f(n) of {@code node} to the lowest f(n) among its children, in
+     * memory or forgotten, and passes the change on to its ancestors.
+     */
+    private void backUp(Node node)
+    {
+        while (node != null)
+        {
+            int lowest = INFINITE;
+            for (int i = 0; i < node.children.length; i++)
+            {
+                if (node.children[i] != null)
+                {
+                    lowest = Math.min(lowest, node.children[i].cost);
+                } else if (node.forgottenCost[i] >= 0)
+                {
+                    lowest = Math.min(lowest, node.forgottenCost[i]);
+                }
+            }
+            if (lowest <= node.cost)
+            {
+                return;
+            }
+            boolean queued = dequeue(node);
+            node.cost = lowest;
+            if (queued)
+            {
+                queue(node);
+            }
+            node = node.parent;
+        }
+    }
+
+    /**
+     * removes {@code node} from memory if every move from it leads to a board
+     * already in memory, and then any ancestor left without children the
+     * same way.  such a node cannot lead anywhere new, and nothing needs to
+     * remember it.
+     * @return the lowest node still in memory, whose f(n) needs backing up.
+     */
+    private Node discardDeadEnds(Node node)
+    {
+        while (node.parent != null && node.isLeaf())
+        {
+            for (int cost : node.forgottenCost)
+            {
+                if (cost >= 0)
+                {
+                    return node;
+                }
+            }
+            inMemory.remove(node.state.getStateKey(), node);
+            nodesInMemory--;
+            Node parent = node.parent;
+            boolean queued = dequeue(parent);
+            parent.children[node.parentMove] = null;
+            if (queued)
+            {
+                queue(parent);
+            }
+            node = parent;
+        }
+        return node;
+    }
+
+    private void queue(Node node)
+    {
+        frontier.add(node);
+        if (node.parent != null && node.isLeaf())
+        {
+            leaves.add(node);
+        }
+    }
+
+    /**
+     * @return whether the node was on the frontier.
+     */
+    private boolean dequeue(Node node)
+    {
+        leaves.remove(node);
+        return frontier.remove(node);
+    }
+
+    /**
+     * drops the leaf with the highest f(n), shallowest first, and lets its
+     * parent remember that f(n).  the children just generated are only
+     * dropped when no other leaf is left; otherwise the search could drop
+     * and regenerate the same child forever.
+     * @param expanded the node just expanded, which is never dropped.
+     */
+    private void forgetWorstLeaf(Node expanded)
+    {
+        //backwards, the leaves run from highest f(n) down, shallowest first.
+        Node worst = null;
+        Node worstNewChild = null;
+        Iterator<Node> candidates = leaves.descendingIterator();
+        while (worst == null && candidates.hasNext())
+        {
+            Node candidate = candidates.next();
+            if (candidate == expanded)
+            {
+                continue;
+            }
+            if (candidate.parent != expanded)
+            {
+                worst = candidate;
+            } else if (worstNewChild == null)
+            {
+                worstNewChild = candidate;
+            }
+        }
+        if (worst == null)
+        {
+            worst = worstNewChild;
+        }
+        if (worst == null)
+        {
+            throw new IllegalStateException("Node budget of " + nodeBudget + " is too small to continue");
+        }
+
+        dequeue(worst);
+        inMemory.remove(worst.state.getStateKey(), worst);
+        nodesInMemory--;
+        nodesForgotten++;
+
+        Node parent = worst.parent;
+        dequeue(parent);
+        parent.children[worst.parentMove] = null;
+        parent.forgottenCost[worst.parentMove] = worst.cost;
+        queue(parent);
+    }
+
+    private int estimate(Puzzle state)
+    {
+        return (heuristic == 3) ? state.getPathCostMisplaced() : state.getPathCostManhattan();
+    }
+
+    /**
+     * @return how many times a leaf was dropped to stay within the node budget.
+     */
+    public int getNodesForgotten()
+    {
+        return nodesForgotten;
+    }
+
+    /**
+     * @return the performance stats of the last {@code Search()}; the ASCII
+     * report is only drawn when saving to disk.
+     */
+    public Utility getStatistics()
+    {
+        return statisticsGatherer;
+    }
+}
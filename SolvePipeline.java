@@ -0,0 +1,243 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Streaming batch mode for Unix pipelines: reads one {@code SolveRequest}
+ *  JSON object per line, solves them on several worker threads and writes
+ *  one JSON result per line (JSON Lines), either in input order or as each
+ *  one finishes.
+ *
+ *  The reader, the workers and the writer are separate stages joined by
+ *  bounded queues, and the reader may only run a fixed number of lines ahead
+ *  of the writer.  Memory therefore stays the same no matter how long the
+ *  input is, and a slow consumer of the output eventually stops the reader.
+ *
+ *  The reader screens each query first ({@code SolveRequest.screen}):
+ *  unsolvable and nearly solved queries are answered on the spot and go
+ *  straight to the writer, so only queries that need a search take up a
+ *  worker, which goes straight to {@code SolveRequest.search}.
+ */
+public class SolvePipeline {
+
+    private static final int LINES_PER_WORKER = 16;
+
+    private int workers;
+    private boolean ordered;
+
+    private BlockingQueue<Job> pendingJobs;
+    private BlockingQueue<Job> finishedJobs;
+    private Semaphore window;   //lines read but not yet written; bounds every queue and the reorder buffer.
+
+    /**
+     * one input line on its way through the stages.  the reader fills in
+     * either the request or the error; the worker fills in the result.
+     */
+    private static class Job {
+        long sequence;
+        SolveRequest request;
+        String result;
+
+        Job(long sequence, SolveRequest request, String result)
+        {
+            this.sequence = sequence;
+            this.request = request;
+            this.result = result;
+        }
+    }
+
+    private static final Job END_OF_INPUT = new Job(-1, null, null);
+
+    /**
+     * @param workers number of searches that may run at the same time.
+     * @param ordered true to write results in input order, false to write each as soon as it is done.
+     */
+    public SolvePipeline(int workers, boolean ordered)
+    {
+        this.workers = workers;
+        this.ordered = ordered;
+        int windowSize = workers * LINES_PER_WORKER;
+        pendingJobs = new ArrayBlockingQueue<>(windowSize + workers);
+        finishedJobs = new ArrayBlockingQueue<>(windowSize + workers);
+        window = new Semaphore(windowSize);
+    }
+
+    /**
+     * runs until the input ends and every result has been written.
+     */
+    public void run(InputStream input, OutputStream output) throws InterruptedException
+    {
+        //the searches print their reports; keep them out of the JSON on stdout.
+        PrintStream jsonOut = new PrintStream(output, false, StandardCharsets.UTF_8);
+        PrintStream previousOut = System.out;
+        if (output == previousOut)
+        {
+            System.setOut(System.err);
+        }
+
+        Thread reader = new Thread(() -> readLines(input), "pipeline-reader");
+        reader.start();
+        for (int i = 0; i < workers; i++)
+        {
+            new Thread(this::solveJobs, "pipeline-worker-" + i).start();
+        }
+
+        try
+        {
+            writeResults(jsonOut);
+        } finally
+        {
+            jsonOut.flush();
+            System.setOut(previousOut);
+        }
+        reader.join();
+    }
+
+    private void readLines(InputStream input)
+    {
+        long sequence = 0;
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = lines.readLine()) != null)
+            {
+                if (line.isBlank())
+                {
+                    continue;
+                }
+                window.acquire();
+                Job job;
+                try
+                {
+                    SolveRequest request = SolveRequest.parse(line);
+                    String screened = request.screen();
+                    job = (screened == null) ? new Job(sequence, request, null)
+                            : new Job(sequence, null, request.withId(screened));
+                } catch (IllegalArgumentException e)
+                {
+                    job = new Job(sequence, null, SolveRequest.errorJson(e.getMessage()));
+                }
+                sequence++;
+                if (job.request == null)
+                {
+                    //answered already; straight to the writer.
+                    finishedJobs.put(job);
+                } else
+                {
+                    pendingJobs.put(job);
+                }
+            }
+        } catch (IOException e)
+        {
+            e.printStackTrace();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            //one end marker per worker, so that every worker stops.
+            for (int i = 0; i < workers; i++)
+            {
+                putUninterruptibly(pendingJobs, END_OF_INPUT);
+            }
+        }
+    }
+
+    private void solveJobs()
+    {
+        try
+        {
+            Job job;
+            while ((job = pendingJobs.take()) != END_OF_INPUT)
+            {
+                if (job.request != null)
+                {
+                    try
+                    {
+                        job.result = job.request.withId(job.request.search());
+                    } catch (RuntimeException e)
+                    {
+                        job.result = job.request.withId(SolveRequest.errorJson(String.valueOf(e)));
+                    }
+                }
+                finishedJobs.put(job);
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            putUninterruptibly(finishedJobs, END_OF_INPUT);
+        }
+    }
+
+    private void writeResults(PrintStream jsonOut) throws InterruptedException
+    {
+        HashMap<Long, String> waitingForEarlierLines = new HashMap<>();
+        long nextToWrite = 0;
+        int workersDone = 0;
+
+        while (workersDone < workers)
+        {
+            Job job = finishedJobs.take();
+            if (job == END_OF_INPUT)
+            {
+                workersDone++;
+                continue;
+            }
+
+            if (!ordered)
+            {
+                jsonOut.println(job.result);
+                window.release();
+            } else
+            {
+                waitingForEarlierLines.put(job.sequence, job.result);
+                String next;
+                while ((next = waitingForEarlierLines.remove(nextToWrite)) != null)
+                {
+                    jsonOut.println(next);
+                    nextToWrite++;
+                    window.release();
+                }
+            }
+
+            //only flush when there is nothing else ready, so busy pipelines write in blocks.
+            if (finishedJobs.isEmpty())
+            {
+                jsonOut.flush();
+            }
+        }
+    }
+
+    private static void putUninterruptibly(BlockingQueue<Job> queue, Job job)
+    {
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                queue.put(job);
+                break;
+            } catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
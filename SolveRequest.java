@@ -0,0 +1,420 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  A single solve query in JSON form, as used by the non-interactive modes:
+ *
+ *      {"id": "q1", "start": [1,2,3,4,5,6,0,7,8], "goal": [1,2,3,4,5,6,7,8,0], "algorithm": "manhattan"}
+ *
+ *  {@code id} is optional and is copied into the result; {@code algorithm}
+ *  defaults to "manhattan".  A solution is answered as the directions the
+ *  blank slides in ("solution": "RDLU..."), see {@code MoveSequence}, with
+ *  the search's statistics from {@code Utility.toJson} as "stats".  Only the
+ *  flat objects above are understood, so the fields are picked out with
+ *  regular expressions the same way {@code Main.validate} checks keyboard input.
+ */
+public class SolveRequest {
+
+    public static final String DEFAULT_ALGORITHM = "manhattan";
+
+    //backward search trees from the goals asked about, shared by the "cached" requests;
+    //a standing reservation on the memory budget when there is one.
+    private static final GoalTreeCache GOAL_TREES = new GoalTreeCache(3, 3, 1000000, 6);
+
+    //Bloom filter for the "-bloom" requests: room for all 181,440 boards at 1 in 1000.
+    static final long BLOOM_FILTER_BYTES = 1 << 20;
+    static final double BLOOM_FALSE_POSITIVE_RATE = 0.001;
+
+    //memory shared by every query solved at once; null for no limit.
+    private static volatile MemoryBudget memoryBudget = null;
+    private static final long ADMISSION_BYTES = MemoryBudget.CHUNK_BYTES;     //free memory a query needs to start.
+    private static final int SMA_NODE_BUDGET = 100000;
+    private static final int MIN_DEGRADED_NODES = 1000;    //smallest SMA* worth running instead of rejecting.
+
+    private static final Pattern ID_FIELD = Pattern.compile("\"id\"\\s*:\\s*(\"(?:[^\"\\\\]|\\\\.)*\"|-?\\d+)");
+    private static final Pattern ALGORITHM_FIELD = Pattern.compile("\"algorithm\"\\s*:\\s*\"([a-z-]+)\"");
+
+    private String id;          //raw JSON token (quoted string or number), or null.
+    private int[] start;
+    private int[] goal;
+    private String algorithm;
+
+    private SolveRequest(String id, int[] start, int[] goal, String algorithm)
+    {
+        this.id = id;
+        this.start = start;
+        this.goal = goal;
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * reads a query from one JSON object.
+     * @param json the request text.
+     * @return the parsed query.
+     * @throws IllegalArgumentException if a board is missing or is not a permutation of 0-8,
+     *                                  or the algorithm is unknown.
+     */
+    public static SolveRequest parse(String json)
+    {
+        Matcher idMatcher = ID_FIELD.matcher(json);
+        String id = idMatcher.find() ? idMatcher.group(1) : null;
+
+        Matcher algorithmMatcher = ALGORITHM_FIELD.matcher(json);
+        String algorithm = algorithmMatcher.find() ? algorithmMatcher.group(1) : DEFAULT_ALGORITHM;
+        if (!isKnownAlgorithm(algorithm))
+        {
+            throw new IllegalArgumentException("Unknown algorithm \"" + algorithm + "\"");
+        }
+
+        return new SolveRequest(id, readBoard(json, "start"), readBoard(json, "goal"), algorithm);
+    }
+
+    private static int[] readBoard(String json, String field)
+    {
+        Matcher matcher = Pattern.compile("\"" + field + "\"\\s*:\\s*\\[([^\\]]*)\\]").matcher(json);
+        if (!matcher.find())
+        {
+            throw new IllegalArgumentException("Missing \"" + field + "\" board");
+        }
+        String[] entries = matcher.group(1).split(",");
+        if (entries.length != 9)
+        {
+            throw new IllegalArgumentException("\"" + field + "\" must have 9 entries");
+        }
+
+        int[] board = new int[9];
+        boolean[] dup = new boolean[9];
+        for (int i = 0; i < entries.length; i++)
+        {
+            String entry = entries[i].trim();
+            if (!entry.matches("[0-8]") || dup[entry.charAt(0) - '0'])
+            {
+                throw new IllegalArgumentException("\"" + field + "\" must hold each of 0-8 exactly once");
+            }
+            board[i] = entry.charAt(0) - '0';
+            dup[board[i]] = true;
+        }
+        return board;
+    }
+
+    /**
+     * puts every query solved from now on under {@code budget}: a query is
+     * rejected if the budget is full when it starts, and a search stopped for
+     * running out of budget is retried with SMA* in the memory left.
+     * @param budget the budget, or null for no limit.
+     */
+    public static void setMemoryBudget(MemoryBudget budget)
+    {
+        memoryBudget = budget;
+        GOAL_TREES.setMemoryBudget(budget);
+    }
+
+    /**
+     * @return the bytes the "cached" requests' goal trees hold in the memory budget.
+     */
+    public static long getGoalTreeBytes()
+    {
+        return GOAL_TREES.getReservedBytes();
+    }
+
+    public static MemoryBudget getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    public int[] getStart()
+    {
+        return start;
+    }
+
+    public int[] getGoal()
+    {
+        return goal;
+    }
+
+    public static boolean isKnownAlgorithm(String algorithm)
+    {
+        return Arrays.asList("breadth", "greedy", "misplaced", "manhattan", "weighted",
+                "anytime", "idastar", "portfolio", "sma", "sma-misplaced", "beam", "cached", "breadth-bloom", "beam-bloom", "epea", "fringe", "lrta").contains(algorithm);
+    }
+
+    /**
+     * a solution path together with the statistics of the search that found it.
+     */
+    static class SearchRun {
+        ArrayList<Puzzle> solution;
+        Utility statistics;     //null for the portfolio and the cached goal trees.
+
+        SearchRun(ArrayList<Puzzle> solution, Utility statistics)
+        {
+            this.solution = solution;
+            this.statistics = statistics;
+        }
+    }
+
+    /**
+     * runs the named search method without saving anything to disk.
+     * @return the solution path from start to goal, or null if none was found.
+     */
+    public static ArrayList<Puzzle> runAlgorithm(Puzzle initState, String algorithm)
+    {
+        return runSearch(initState, algorithm).solution;
+    }
+
+    /**
+     * runs the named search method without saving anything to disk.
+     * @return the solution path (null if none was found) and the search's statistics.
+     */
+    static SearchRun runSearch(Puzzle initState, String algorithm)
+    {
+        switch (algorithm)
+        {
+            case "breadth":
+            case "breadth-bloom":
+                BreadthFirst breadthFirst = new BreadthFirst(initState, false);
+                if (algorithm.equals("breadth-bloom"))
+                {
+                    breadthFirst.useDuplicateFilter(BLOOM_FILTER_BYTES, BLOOM_FALSE_POSITIVE_RATE);
+                }
+                return new SearchRun(breadthFirst.Search(), breadthFirst.getStatistics());
+            case "greedy":
+                GreedyBestFirst greedy = new GreedyBestFirst(initState, false);
+                return new SearchRun(greedy.Search(), greedy.getStatistics());
+            case "misplaced":
+                MisplacedAStar misplaced = new MisplacedAStar(initState, false);
+                return new SearchRun(misplaced.Search(), misplaced.getStatistics());
+            case "manhattan":
+                ManhattanAStar manhattan = new ManhattanAStar(initState, false);
+                return new SearchRun(manhattan.Search(), manhattan.getStatistics());
+            case "weighted":
+                WeightedAStar weighted = new WeightedAStar(initState, 2.0, false);
+                return new SearchRun(weighted.Search(), weighted.getStatistics());
+            case "anytime":
+                AnytimeAStar anytime = new AnytimeAStar(initState, 3.0, 0.5, 10, false);
+                return new SearchRun(anytime.Search(), anytime.getStatistics());
+            case "idastar":
+                IDAStar idaStar = new IDAStar(initState, false);
+                return new SearchRun(idaStar.Search(), idaStar.getStatistics());
+            case "portfolio":
+                return new SearchRun(new PortfolioSearch(initState, true, false).Search(), null);
+            case "sma":
+            case "sma-misplaced":
+                SMAStar smaStar = new SMAStar(initState, SMA_NODE_BUDGET, algorithm.equals("sma") ? 4 : 3, false);
+                return new SearchRun(smaStar.Search(), smaStar.getStatistics());
+            case "beam":
+            case "beam-bloom":
+                BeamSearch beamSearch = new BeamSearch(initState, 100, 4, false);
+                beamSearch.setKnownOptimalLength(EightPuzzleTable.distance(initState.getCurrentNumbers(),
+                        initState.getGoalNumbers()) + 1);
+                if (algorithm.equals("beam-bloom"))
+                {
+                    beamSearch.useDuplicateFilter(BLOOM_FILTER_BYTES, BLOOM_FALSE_POSITIVE_RATE);
+                }
+                return new SearchRun(beamSearch.Search(), beamSearch.getStatistics());
+            case "epea":
+                PartialExpansionAStar epea = new PartialExpansionAStar(initState, 4, false);
+                return new SearchRun(epea.Search(), epea.getStatistics());
+            case "fringe":
+                Utility fringeStatistics = new Utility(15);
+                return new SearchRun(FringeSearch.runSearch(initState, fringeStatistics, false), fringeStatistics);
+            case "lrta":
+                Utility lrtaStatistics = new Utility(16);
+                return new SearchRun(LRTAStar.runSearch(initState, 6, 100000, 100000, lrtaStatistics, false),
+                        lrtaStatistics);
+            case "cached":
+                MoveSequence moves = GOAL_TREES.solve(initState.getCurrentNumbers(), initState.getGoalNumbers());
+                return new SearchRun((moves == null) ? null : moves.replay(initState), null);
+            default:
+                throw new IllegalArgumentException("Unknown algorithm \"" + algorithm + "\"");
+        }
+    }
+
+    /**
+     * two queries with the same key always have the same answer, so only one
+     * of them needs to be searched.  the id is not part of the key.
+     */
+    public String getKey()
+    {
+        return algorithm + Arrays.toString(start) + Arrays.toString(goal);
+    }
+
+    /**
+     * answers the query without a search if it is cheap to: an unsolvable
+     * pair by its parity, and a start within {@code NeighbourhoodTable.RADIUS}
+     * moves of the goal by a shortest solution from the table (marked
+     * "screened").  takes microseconds, so it can run before a query is
+     * handed to a worker.
+     * @return the result as a JSON object, without the id, or null if the query needs a search.
+     */
+    public String screen()
+    {
+        long startTime = System.nanoTime();
+        StringBuilder json = resultHeader();
+        if (!Utility.isSolvable(start, goal, 3))
+        {
+            json.append(",\"solvable\":false}");
+            return json.toString();
+        }
+        MoveSequence moves = NeighbourhoodTable.solve(start, goal, 3);
+        if (moves == null)
+        {
+            return null;
+        }
+        json.append(",\"solvable\":true,\"screened\":true");
+        json.append(",\"moves\":").append(moves.length());
+        json.append(",\"millis\":").append((System.nanoTime() - startTime) / 1000000L);
+        json.append(",\"solution\":\"").append(moves).append("\"}");
+        return json.toString();
+    }
+
+    private StringBuilder resultHeader()
+    {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"algorithm\":\"").append(algorithm).append("\"");
+        json.append(",\"start\":").append(Arrays.toString(start).replace(" ", ""));
+        json.append(",\"goal\":").append(Arrays.toString(goal).replace(" ", ""));
+        return json;
+    }
+
+    /**
+     * solves the query, by {@code screen} if it can, otherwise by a search.
+     * @return the result as a JSON object, without the id (see {@code withId}).
+     * @throws RejectedExecutionException if there is a memory budget and it has no room for the query.
+     */
+    public String solve()
+    {
+        String screened = screen();
+        return (screened != null) ? screened : search();
+    }
+
+    /**
+     * solves the query by a search, for callers that have had {@code screen}
+     * return null already and should not pay for it twice.
+     * @return the result as a JSON object, without the id (see {@code withId}).
+     * @throws RejectedExecutionException if there is a memory budget and it has no room for the query.
+     */
+    public String search()
+    {
+        long startTime = System.nanoTime();
+        StringBuilder json = resultHeader();
+
+        Puzzle initState = Utility.createPuzzle(start, goal);
+        ArrayList<Puzzle> solutionList;
+        Utility statistics = null;
+        boolean degraded = false;
+        long peakBytes = -1;
+        if (memoryBudget == null)
+        {
+            SearchRun run = runSearch(initState, algorithm);
+            solutionList = run.solution;
+            statistics = run.statistics;
+        } else
+        {
+            MemoryBudget.Account account = memoryBudget.admit(ADMISSION_BYTES);
+            if (account == null)
+            {
+                throw new RejectedExecutionException("Memory budget exhausted");
+            }
+            try
+            {
+                SearchRun run = runSearch(initState, algorithm);
+                solutionList = run.solution;
+                statistics = run.statistics;
+                if (solutionList == null && account.isOverBudget())
+                {
+                    //stopped for memory: the lists it held are garbage now, so try SMA* in what is left.
+                    Thread.interrupted();
+                    account.releaseAll();
+                    account.clearOverBudget();
+                    //less a chunk, as the budget is reserved a chunk at a time.
+                    long room = account.getAvailableBytes() - MemoryBudget.CHUNK_BYTES;
+                    long nodes = Math.min(SMA_NODE_BUDGET, room / Utility.PUZZLE_STATE_BYTES);
+                    if (nodes >= MIN_DEGRADED_NODES)
+                    {
+                        SMAStar smaStar = new SMAStar(initState, (int) nodes, 4, false);
+                        solutionList = smaStar.Search();
+                        statistics = smaStar.getStatistics();
+                    }
+                    if (solutionList == null && (nodes < MIN_DEGRADED_NODES || account.isOverBudget()))
+                    {
+                        throw new RejectedExecutionException("Memory budget exhausted");
+                    }
+                    degraded = true;
+                }
+                peakBytes = account.getPeakBytes();
+            } finally
+            {
+                if (account.isOverBudget())
+                {
+                    //the search may have finished before it looked for the interrupt that was to stop it,
+                    //so clear it whatever came back; it must not stop the worker's next query.
+                    Thread.interrupted();
+                }
+                account.close();
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000L;
+
+        json.append(",\"solvable\":true");
+        if (degraded)
+        {
+            json.append(",\"degraded\":\"sma\"");
+        }
+        if (peakBytes >= 0)
+        {
+            json.append(",\"peakBytes\":").append(peakBytes);
+            if (algorithm.equals("cached"))
+            {
+                //the trees outlive the query, so they are reserved apart from it.
+                json.append(",\"cacheBytes\":").append(GOAL_TREES.getReservedBytes());
+            }
+        }
+        if (statistics != null)
+        {
+            json.append(",\"stats\":").append(statistics.toJson());
+        }
+        if (solutionList == null)
+        {
+            json.append(",\"moves\":null,\"millis\":").append(elapsedMillis).append("}");
+            return json.toString();
+        }
+        json.append(",\"moves\":").append(solutionList.size() - 1);
+        if (algorithm.startsWith("beam"))
+        {
+            //beam search is not optimal; rate it against the shortest solution from the table.
+            int optimal = EightPuzzleTable.distance(start, goal);
+            json.append(",\"optimalMoves\":").append(optimal);
+            json.append(",\"quality\":").append(String.format("%.3f",
+                    (optimal == 0) ? 1.0 : (double) (solutionList.size() - 1) / optimal));
+        }
+        json.append(",\"millis\":").append(elapsedMillis);
+        json.append(",\"solution\":\"").append(MoveSequence.fromSolution(solutionList, 3)).append("\"}");
+        return json.toString();
+    }
+
+    /**
+     * copies this query's id, if it has one, into a result from {@code solve}.
+     */
+    public String withId(String result)
+    {
+        if (id == null)
+        {
+            return result;
+        }
+        return "{\"id\":" + id + "," + result.substring(1);
+    }
+
+    /**
+     * formats an error message as a JSON object.
+     */
+    public static String errorJson(String message)
+    {
+        return "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+    }
+}
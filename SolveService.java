@@ -0,0 +1,302 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Long-running solve service on the JDK's built-in HTTP server, bound to
+ *  localhost only.
+ *
+ *      POST /solve     body is a {@code SolveRequest} JSON object; answers with the result object.
+ *      GET  /health    "ok" while the service is running.
+ *      GET  /metrics   request counters and worker pool state, one "name value" pair per line.
+ *
+ *  Searches run on a fixed pool of worker threads with a bounded queue; when
+ *  the queue is full new requests are answered with 503 instead of piling up.
+ *  The same goes for requests the memory budget has no room for, when one
+ *  is set with {@code SolveRequest.setMemoryBudget}.
+ *  Identical queries that arrive while one is already being solved wait for
+ *  that search instead of starting their own.  A caller that times out gives
+ *  up its place; once every caller waiting on a search has timed out the
+ *  search is cancelled, interrupted on its worker or taken off the queue,
+ *  so abandoned queries do not hold up the pool.  Unsolvable and nearly solved
+ *  queries are answered on the request thread without a search, see
+ *  {@code SolveRequest.screen}; the workers only get the rest and call
+ *  {@code SolveRequest.search}, so no query is screened twice.
+ */
+public class SolveService {
+
+    public static final int DEFAULT_PORT = 8080;
+    private static final int QUEUE_PER_WORKER = 16;
+    private static final long SOLVE_TIMEOUT_SECONDS = 60;
+
+    private int port;
+    private ThreadPoolExecutor workerPool;
+    private HttpServer server;
+
+    //queries currently being solved, by SolveRequest key.
+    private ConcurrentHashMap<String, InFlightSearch> inFlight = new ConcurrentHashMap<>();
+
+    private AtomicLong requestsReceived = new AtomicLong();
+    private AtomicLong requestsSolved = new AtomicLong();
+    private AtomicLong requestsBatched = new AtomicLong();   //answered by another request's search.
+    private AtomicLong requestsScreened = new AtomicLong();  //answered without a search, see SolveRequest.screen.
+    private AtomicLong requestsRejected = new AtomicLong();
+    private AtomicLong requestsFailed = new AtomicLong();
+    private AtomicLong searchesCancelled = new AtomicLong();     //every caller timed out before the answer.
+    private AtomicLong solveNanos = new AtomicLong();
+
+    /**
+     * a search on the worker pool and the callers waiting for its answer.
+     */
+    private static class InFlightSearch {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        volatile Future<?> task;    //null until it is on the pool.
+        int waiters = 1;            //only changed inside inFlight.compute for its key.
+    }
+
+    /**
+     * @param port localhost port to listen on.
+     * @param workers number of searches that may run at the same time.
+     */
+    public SolveService(int port, int workers)
+    {
+        this.port = port;
+        workerPool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers * QUEUE_PER_WORKER));
+    }
+
+    /**
+     * binds the port and starts answering requests on background threads.
+     */
+    public void start()
+    {
+        try
+        {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        } catch (IOException e)
+        {
+            throw new IllegalStateException("Could not listen on port " + port, e);
+        }
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/health", exchange -> respond(exchange, 200, "text/plain", "ok\n"));
+        server.createContext("/metrics", exchange -> respond(exchange, 200, "text/plain", metrics()));
+        //connection handling only waits on the workers, so it gets its own cheap threads.
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        System.out.println("Solve service listening on http://127.0.0.1:" + port + "/solve");
+    }
+
+    /**
+     * stops accepting requests and lets the searches already queued finish.
+     */
+    public void stop()
+    {
+        server.stop(0);
+        workerPool.shutdown();
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException
+    {
+        if (!exchange.getRequestMethod().equals("POST"))
+        {
+            respond(exchange, 405, "application/json", SolveRequest.errorJson("Use POST"));
+            return;
+        }
+        requestsReceived.incrementAndGet();
+
+        SolveRequest request;
+        try (InputStream body = exchange.getRequestBody())
+        {
+            request = SolveRequest.parse(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e)
+        {
+            requestsFailed.incrementAndGet();
+            respond(exchange, 400, "application/json", SolveRequest.errorJson(e.getMessage()));
+            return;
+        }
+
+        String screened = request.screen();
+        if (screened != null)
+        {
+            requestsScreened.incrementAndGet();
+            requestsSolved.incrementAndGet();
+            respond(exchange, 200, "application/json", request.withId(screened));
+            return;
+        }
+
+        InFlightSearch search;
+        try
+        {
+            search = submit(request);
+        } catch (RejectedExecutionException e)
+        {
+            requestsRejected.incrementAndGet();
+            respond(exchange, 503, "application/json", SolveRequest.errorJson("Too many queued requests"));
+            return;
+        }
+
+        try
+        {
+            String json = search.result.get(SOLVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            requestsSolved.incrementAndGet();
+            respond(exchange, 200, "application/json", request.withId(json));
+        } catch (TimeoutException e)
+        {
+            abandon(request.getKey(), search);
+            requestsFailed.incrementAndGet();
+            respond(exchange, 504, "application/json", SolveRequest.errorJson("Search timed out"));
+        } catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RejectedExecutionException)
+            {
+                //no room left in the memory budget.
+                requestsRejected.incrementAndGet();
+                respond(exchange, 503, "application/json", SolveRequest.errorJson(e.getCause().getMessage()));
+                return;
+            }
+            requestsFailed.incrementAndGet();
+            respond(exchange, 500, "application/json", SolveRequest.errorJson(String.valueOf(e.getCause())));
+        } catch (InterruptedException e)
+        {
+            abandon(request.getKey(), search);
+            requestsFailed.incrementAndGet();
+            respond(exchange, 500, "application/json", SolveRequest.errorJson(String.valueOf(e.getCause())));
+        }
+    }
+
+    /**
+     * hands a query to the worker pool, or joins the search already running
+     * for an identical query.
+     * @throws RejectedExecutionException if the worker queue is full.
+     */
+    private InFlightSearch submit(SolveRequest request)
+    {
+        String key = request.getKey();
+        InFlightSearch mine = new InFlightSearch();
+        InFlightSearch search = inFlight.compute(key, (k, existing) -> {
+            if (existing == null)
+            {
+                return mine;
+            }
+            existing.waiters++;
+            return existing;
+        });
+        if (search != mine)
+        {
+            requestsBatched.incrementAndGet();
+            return search;
+        }
+
+        try
+        {
+            mine.task = workerPool.submit(() -> {
+                long startTime = System.nanoTime();
+                try
+                {
+                    mine.result.complete(request.search());
+                } catch (RuntimeException e)
+                {
+                    mine.result.completeExceptionally(e);
+                } finally
+                {
+                    solveNanos.addAndGet(System.nanoTime() - startTime);
+                    inFlight.remove(key, mine);
+                }
+            });
+        } catch (RejectedExecutionException e)
+        {
+            inFlight.remove(key, mine);
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+        return mine;
+    }
+
+    /**
+     * gives up a caller's place on a search; the last caller to give up
+     * cancels it, so the next identical query starts a search of its own.
+     */
+    private void abandon(String key, InFlightSearch search)
+    {
+        boolean[] last = {false};
+        inFlight.computeIfPresent(key, (k, current) -> {
+            if (current != search || --current.waiters > 0)
+            {
+                return current;
+            }
+            last[0] = true;
+            return null;
+        });
+        Future<?> task = search.task;
+        if (last[0] && task != null && task.cancel(true))
+        {
+            //a search still queued is cancelled without running; take it off the queue to free its place.
+            workerPool.purge();
+            searchesCancelled.incrementAndGet();
+        }
+    }
+
+    private String metrics()
+    {
+        StringBuilder text = new StringBuilder();
+        text.append("requests_received ").append(requestsReceived.get()).append("\n");
+        text.append("requests_solved ").append(requestsSolved.get()).append("\n");
+        text.append("requests_batched ").append(requestsBatched.get()).append("\n");
+        text.append("requests_screened ").append(requestsScreened.get()).append("\n");
+        text.append("requests_rejected ").append(requestsRejected.get()).append("\n");
+        text.append("requests_failed ").append(requestsFailed.get()).append("\n");
+        text.append("searches_cancelled ").append(searchesCancelled.get()).append("\n");
+        text.append("solve_seconds_total ").append(String.format("%.3f", solveNanos.get() / 1e9)).append("\n");
+        text.append("searches_in_flight ").append(inFlight.size()).append("\n");
+        text.append("workers_active ").append(workerPool.getActiveCount()).append("\n");
+        text.append("worker_queue_depth ").append(workerPool.getQueue().size()).append("\n");
+        for (Map.Entry<String, Double> winRate : PortfolioSearch.getWinRates().entrySet())
+        {
+            //"IDA*" becomes portfolio_win_rate_idastar, to keep one "name value" pair per line.
+            String engine = winRate.getKey().toLowerCase().replace("*", "star").replaceAll("[^a-z0-9]+", "_");
+            text.append("portfolio_win_rate_").append(engine).append(" ")
+                    .append(String.format("%.4f", winRate.getValue())).append("\n");
+        }
+        MemoryBudget budget = SolveRequest.getMemoryBudget();
+        if (budget != null)
+        {
+            text.append("memory_budget_bytes ").append(budget.getLimitBytes()).append("\n");
+            text.append("memory_reserved_bytes ").append(budget.getReservedBytes()).append("\n");
+            text.append("memory_rejected ").append(budget.getRejected()).append("\n");
+            text.append("memory_exceeded ").append(budget.getExceeded()).append("\n");
+            text.append("memory_goal_tree_bytes ").append(SolveRequest.getGoalTreeBytes()).append("\n");
+        }
+        return text.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  Summarizes a file written by {@code ExpansionTrace}:
+ *
+ *      java TraceAnalyzer <trace file>
+ *
+ *  Prints how many states were expanded at each f(n), how the search grew
+ *  with depth (states expanded per depth, how many of them were expanded
+ *  more than once, and the growth over the depth before), and how far the
+ *  heuristic was from the true distance to the goal.
+ *
+ *  On 3x3 the true distance of every board is read from
+ *  {@code EightPuzzleTable}.  Larger boards have no table, so the error is
+ *  only measured along the solution, when the last expansion was the goal:
+ *  with an admissible heuristic A* finds a shortest path, and the true
+ *  distance of a board on it is the solution length less its depth.  If the
+ *  ring was written over, only the expansions still in it are counted.
+ */
+public class TraceAnalyzer {
+
+    private int width;
+    private int height;
+    private int[] goal;
+    private long recorded;
+    private int kept;
+    private long first;         //expansion number of the oldest record kept.
+
+    private long[] states;
+    private int[] parents;
+    private int[] depths;
+    private int[] estimates;
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.out.println("usage: java TraceAnalyzer <trace file>");
+            return;
+        }
+        new TraceAnalyzer(new File(args[0])).printSummary();
+    }
+
+    /**
+     * reads the trace into memory, oldest expansion first.
+     * @throws IOException if the file cannot be read or is not a trace.
+     */
+    public TraceAnalyzer(File path) throws IOException
+    {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r"); FileChannel channel = file.getChannel())
+        {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < ExpansionTrace.HEADER_BYTES || data.getInt(0) != ExpansionTrace.MAGIC)
+            {
+                throw new IOException(path + " is not an expansion trace");
+            }
+            width = data.getShort(4);
+            height = data.getShort(6);
+            int capacity = data.getInt(8);
+            goal = PackedBoard.unpack(data.getLong(12), width * height);
+            recorded = data.getLong(20);
+            kept = (int) Math.min(recorded, capacity);
+            first = recorded - kept;
+
+            states = new long[kept];
+            parents = new int[kept];
+            depths = new int[kept];
+            estimates = new int[kept];
+            for (int i = 0; i < kept; i++)
+            {
+                int offset = ExpansionTrace.HEADER_BYTES + (int) ((first + i) % capacity) * ExpansionTrace.RECORD_BYTES;
+                states[i] = data.getLong(offset);
+                parents[i] = data.getInt(offset + 8);
+                depths[i] = data.getShort(offset + 12);
+                estimates[i] = data.getShort(offset + 14);
+            }
+        }
+    }
+
+    public void printSummary()
+    {
+        System.out.println(width + "x" + height + " board, goal:");
+        System.out.print(PackedBoard.toString(PackedBoard.pack(goal), width, height));
+        System.out.println(recorded + " expansions recorded"
+                + ((kept < recorded) ? ", the latest " + kept + " kept" : ""));
+        if (kept == 0)
+        {
+            return;
+        }
+        printFValues();
+        printGrowth();
+        printHeuristicError();
+    }
+
+    private void printFValues()
+    {
+        TreeMap<Integer, Long> counts = new TreeMap<>();
+        for (int i = 0; i < kept; i++)
+        {
+            counts.merge(depths[i] + estimates[i], 1L, Long::sum);
+        }
+        System.out.println();
+        System.out.println("   f(n) |  expansions");
+        printBars(counts);
+    }
+
+    private void printGrowth()
+    {
+        TreeMap<Integer, Long> expanded = new TreeMap<>();
+        TreeMap<Integer, Long> repeated = new TreeMap<>();
+        HashMap<Long, Integer> seen = new HashMap<>();
+        for (int i = 0; i < kept; i++)
+        {
+            expanded.merge(depths[i], 1L, Long::sum);
+            if (seen.merge(states[i], 1, Integer::sum) > 1)
+            {
+                repeated.merge(depths[i], 1L, Long::sum);
+            }
+        }
+        System.out.println();
+        System.out.println("  depth |  expansions |  repeated |  growth");
+        long before = 0;
+        for (int depth : expanded.keySet())
+        {
+            long count = expanded.get(depth);
+            String growth = (before == 0) ? "" : String.format("%7.2f", (double) count / before);
+            System.out.println(String.format("%7d | %11d | %9d | %s", depth, count,
+                    repeated.getOrDefault(depth, 0L), growth));
+            before = count;
+        }
+    }
+
+    private void printHeuristicError()
+    {
+        //true distance minus h, for every board it is known for.
+        TreeMap<Integer, Long> errors = new TreeMap<>();
+        TreeMap<Integer, long[]> byDistance = new TreeMap<>();     //true distance -> {boards, sum of h}
+        String source;
+        if (width == 3 && height == 3)
+        {
+            source = "every expansion, true distance from EightPuzzleTable";
+            for (int i = 0; i < kept; i++)
+            {
+                int distance = EightPuzzleTable.distance(PackedBoard.unpack(states[i], 9), goal);
+                addError(errors, byDistance, distance, estimates[i]);
+            }
+        } else if (states[kept - 1] == PackedBoard.pack(goal))
+        {
+            source = "the solution path, true distance = solution length - g(n)";
+            int length = depths[kept - 1];
+            for (int i = kept - 1; i >= 0; )
+            {
+                addError(errors, byDistance, length - depths[i], estimates[i]);
+                long parent = parents[i];
+                if (parent < first)
+                {
+                    break;  //the rest of the path was written over.
+                }
+                i = (int) (parent - first);
+            }
+        } else
+        {
+            System.out.println();
+            System.out.println("heuristic error: unknown, the search did not end on the goal.");
+            return;
+        }
+
+        System.out.println();
+        System.out.println("heuristic error over " + source + ":");
+        System.out.println("  true distance |  boards |  mean h |  mean error");
+        for (int distance : byDistance.keySet())
+        {
+            long[] totals = byDistance.get(distance);
+            double meanH = (double) totals[1] / totals[0];
+            System.out.println(String.format("%15d | %7d | %7.2f | %11.2f", distance, totals[0], meanH, distance - meanH));
+        }
+        System.out.println();
+        System.out.println("  error |  boards");
+        printBars(errors);
+    }
+
+    private static void addError(TreeMap<Integer, Long> errors, TreeMap<Integer, long[]> byDistance,
+                                 int distance, int estimate)
+    {
+        if (distance < 0)
+        {
+            return;     //cannot reach the goal.
+        }
+        errors.merge(distance - estimate, 1L, Long::sum);
+        long[] totals = byDistance.computeIfAbsent(distance, k -> new long[2]);
+        totals[0]++;
+        totals[1] += estimate;
+    }
+
+    /**
+     * one line per key with its count and a bar scaled to the largest count.
+     */
+    private static void printBars(TreeMap<Integer, Long> counts)
+    {
+        long largest = 1;
+        for (long count : counts.values())
+        {
+            largest = Math.max(largest, count);
+        }
+        for (int key : counts.keySet())
+        {
+            long count = counts.get(key);
+            int bar = (int) Math.ceil(40.0 * count / largest);
+            System.out.println(String.format("%7d | %11d  %s", key, count, "#".repeat(bar)));
+        }
+    }
+}
@@ -2,8 +2,10 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 
 /**
  *      Briana Collins brcollins@alaska.edu
@@ -16,13 +18,33 @@ public class Utility {
 
     private int totalNodesExpanded = 0;     //keep track of how many gameStates a search method needs to expand.
     private int sizeOfClosedList = 0;       //keep track of how large the closed list is.
+    private int maxSizeOfClosedList = 0;    //largest the closed list has been, for searches that shrink it.
     private int maxSizeOfFrontierList = 0;  //keep track of largest size of open list at any given time.
     private int solutionLength = 0;         //keep track of how many steps it takes to solve a puzzle.
     private int treeDepth = 0;              //keep track of how deep the search method needs to go. approx.
                                             //      same as the solution length, but can be
                                             //      updated during the search.
+    private int duplicatesPruned = 0;       //children never enqueued because a cheaper copy was already known.
+    private int staleEntriesSkipped = 0;    //frontier entries discarded on removal because a cheaper copy was found later.
+    private int nodesReopened = 0;          //closed states expanded again after a cheaper path to them was found.
     private String searchName = "";
     private int searchType = 0;
+    private boolean reopenClosedNodes = false;  //whether a closed state may be expanded again when reached more cheaply.
+    private double heuristicWeight = 1.0;       //w in f(n) = g(n) + w * h(n) for Weighted A*.
+    private boolean offHeapStorage = false;     //run the A* searches on OffHeapAStar's packed, off-heap lists.
+    private long offHeapBytes = 0;              //largest off-heap memory held by the search's lists.
+    private int knownOptimalLength = 0;         //length of a shortest solution when known, 0 otherwise.
+    private long worstStepNanos = 0;            //longest single move of a real-time search.
+    private BloomFilter duplicateFilter = null; //approximate closed list for Breadth and Beam Search, null for exact.
+    private int sizeOfFrontierList = 0;         //current frontier size, for the memory estimate.
+    private long peakMemoryBytes = 0;           //largest estimated memory held by the search's lists.
+    private long budgetedBytes = 0;             //taken from the memory budget so far.
+    private MemoryBudget.Account memoryAccount = MemoryBudget.current();    //null when not budgeted.
+
+    //typical bytes held per state, for the memory estimate.
+    static final int PUZZLE_STATE_BYTES = 900;  //a Puzzle with its nine PuzzleSquares and list entry.
+    private static final int PACKED_STATE_BYTES = 32;   //a slot of FringeSearch's arrays and index.
+    static final int MAP_ENTRY_BYTES = 80;      //a boxed HashMap entry, as in MultiGoalSearch, LRTA*, Beam Search and GoalTreeCache.
 
     /**
      * use to initialize an class object that can keep track of
@@ -32,6 +54,18 @@ public class Utility {
      *                   2. Greedy Best First Search
      *                   3. A* with Misplaced Tile Heuristic
      *                   4. A* with Manhattan Tile Heuristic
+     *                   5. Weighted A* with Manhattan Tile Heuristic
+     *                   6. Anytime Weighted A* with Manhattan Tile Heuristic
+     *                   7. Iterative Deepening A* with Manhattan Tile Heuristic
+     *                   8. SMA* (memory-bounded A*) with Misplaced Tile Heuristic
+     *                   9. SMA* (memory-bounded A*) with Manhattan Tile Heuristic
+     *                   10. Beam Search with Misplaced Tile Heuristic
+     *                   11. Beam Search with Manhattan Tile Heuristic
+     *                   12. Multi-Goal Breadth Search
+     *                   13. Enhanced Partial Expansion A* with Misplaced Tile Heuristic
+     *                   14. Enhanced Partial Expansion A* with Manhattan Tile Heuristic
+     *                   15. Fringe Search with Manhattan Tile Heuristic
+     *                   16. Real-Time LRTA* with Manhattan Tile Heuristic
      */
     public Utility(int searchType)
     {
@@ -51,6 +85,54 @@ public class Utility {
         {
             this.searchType = 4;
             searchName = "A* with Manhanttan Tile Heuristic";
+        }else if (searchType == 5)
+        {
+            this.searchType = 5;
+            searchName = "Weighted A* with Manhattan Tile Heuristic";
+        }else if (searchType == 6)
+        {
+            this.searchType = 6;
+            searchName = "Anytime Weighted A* with Manhattan Tile Heuristic";
+        }else if (searchType == 7)
+        {
+            this.searchType = 7;
+            searchName = "Iterative Deepening A* with Manhattan Tile Heuristic";
+        }else if (searchType == 8)
+        {
+            this.searchType = 8;
+            searchName = "SMA* with Misplaced Tile Heuristic";
+        }else if (searchType == 9)
+        {
+            this.searchType = 9;
+            searchName = "SMA* with Manhattan Tile Heuristic";
+        }else if (searchType == 10)
+        {
+            this.searchType = 10;
+            searchName = "Beam Search with Misplaced Tile Heuristic";
+        }else if (searchType == 11)
+        {
+            this.searchType = 11;
+            searchName = "Beam Search with Manhattan Tile Heuristic";
+        }else if (searchType == 12)
+        {
+            this.searchType = 12;
+            searchName = "Multi-Goal Breadth Search";
+        }else if (searchType == 13)
+        {
+            this.searchType = 13;
+            searchName = "Enhanced Partial Expansion A* with Misplaced Tile Heuristic";
+        }else if (searchType == 14)
+        {
+            this.searchType = 14;
+            searchName = "Enhanced Partial Expansion A* with Manhattan Tile Heuristic";
+        }else if (searchType == 15)
+        {
+            this.searchType = 15;
+            searchName = "Fringe Search with Manhattan Tile Heuristic";
+        }else if (searchType == 16)
+        {
+            this.searchType = 16;
+            searchName = "Real-Time LRTA* with Manhattan Tile Heuristic";
         }else
         {
             System.out.println("Invalid search method type.");
@@ -66,13 +148,34 @@ public class Utility {
         totalNodesExpanded += 1;
     }
 
+    /**
+     * for searches that generate children in batches.
+     * @param count number of children nodes examined.
+     */
+    public void addToNodesExpanded(int count)
+    {
+        totalNodesExpanded += count;
+    }
+
     /**
      * call from a search class to update size of the closed list
      * @param closedList the list generated during a search by a given method.
      */
     public void updateClosedListLength(ArrayList<Puzzle> closedList)
     {
-            sizeOfClosedList = closedList.size();
+            updateClosedListLength(closedList.size());
+    }
+
+    /**
+     * call from a search class to update size of the closed list when the
+     * closed states are not kept in an {@code ArrayList}.
+     * @param size number of states currently on the closed list.
+     */
+    public void updateClosedListLength(int size)
+    {
+        sizeOfClosedList = size;
+        maxSizeOfClosedList = Math.max(maxSizeOfClosedList, size);
+        updateMemoryEstimate();
     }
 
     /**
@@ -81,9 +184,98 @@ public class Utility {
      */
     public void updateFrontierListLength(ArrayList<Puzzle> frontierList)
     {
-        if (frontierList.size() > maxSizeOfFrontierList)
+        updateFrontierListLength(frontierList.size());
+    }
+
+    /**
+     * call from a search class to update size of the frontier list when the
+     * frontier is not kept in an {@code ArrayList}.
+     * @param size number of states currently on the frontier.
+     */
+    public void updateFrontierListLength(int size)
+    {
+        sizeOfFrontierList = size;
+        if (size > maxSizeOfFrontierList)
+        {
+            maxSizeOfFrontierList = size;
+        }
+        updateMemoryEstimate();
+    }
+
+    /**
+     * called from a search class when a child is not enqueued because an
+     * equal or cheaper copy of it is already known.
+     */
+    public void addToDuplicatesPruned()
+    {
+        duplicatesPruned += 1;
+    }
+
+    /**
+     * called from a search class when a frontier entry is discarded on
+     * removal because a cheaper copy of it was found later.
+     */
+    public void addToStaleEntriesSkipped()
+    {
+        staleEntriesSkipped += 1;
+    }
+
+    /**
+     * called from a search class when a closed state is expanded again.
+     */
+    public void addToNodesReopened()
+    {
+        nodesReopened += 1;
+    }
+
+    /**
+     * call from a search class that keeps its lists outside the Java heap.
+     * @param bytes off-heap memory currently held; the largest value is kept.
+     */
+    public void updateOffHeapBytes(long bytes)
+    {
+        if (bytes > offHeapBytes)
+        {
+            offHeapBytes = bytes;
+            updateMemoryEstimate();
+        }
+    }
+
+    /**
+     * estimates the memory the search holds from its list sizes and, when
+     * it runs under a {@code MemoryBudget}, reserves any growth.  if the
+     * budget has no room the search's thread is interrupted, which stops it.
+     */
+    private void updateMemoryEstimate()
+    {
+        long bytesPerState;
+        if (offHeapBytes > 0)
         {
-            maxSizeOfFrontierList = frontierList.size();
+            bytesPerState = 0;      //the off-heap lists already count every state.
+        } else if (searchType == 10 || searchType == 11 || searchType == 12 || searchType == 16)
+        {
+            bytesPerState = MAP_ENTRY_BYTES;     //packed boards in hash sets and maps.
+        } else if (searchType == 15)
+        {
+            bytesPerState = PACKED_STATE_BYTES;
+        } else
+        {
+            bytesPerState = PUZZLE_STATE_BYTES;
+        }
+        long bytes = (long) (sizeOfFrontierList + sizeOfClosedList) * bytesPerState + offHeapBytes
+                + ((duplicateFilter == null) ? 0 : duplicateFilter.getMemoryBytes());
+        peakMemoryBytes = Math.max(peakMemoryBytes, bytes);
+
+        if (memoryAccount != null && bytes > budgetedBytes)
+        {
+            long chunks = (bytes - budgetedBytes + MemoryBudget.CHUNK_BYTES - 1) / MemoryBudget.CHUNK_BYTES;
+            if (memoryAccount.reserve(chunks * MemoryBudget.CHUNK_BYTES))
+            {
+                budgetedBytes += chunks * MemoryBudget.CHUNK_BYTES;
+            } else
+            {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
@@ -112,6 +304,215 @@ public class Utility {
         this.treeDepth = treeDepth;
     }
 
+    /**
+     * sets the re-opening policy for closed states.  with a consistent heuristic
+     * (or Breadth Search) a closed state is never reached more cheaply later on,
+     * but with an inconsistent one it can be; re-opening such states keeps
+     * A* optimal at the cost of expanding some states more than once.
+     * @param reopen true to expand a closed state again when it is reached with a lower depth,
+     *               false to always discard states that are already closed.
+     */
+    public void setReopenClosedNodes(boolean reopen)
+    {
+        reopenClosedNodes = reopen;
+    }
+
+    public boolean isReopenClosedNodes()
+    {
+        return reopenClosedNodes;
+    }
+
+    /**
+     * sets the weight w used by Weighted A*, which orders the frontier by
+     * f(n) = g(n) + w * h(n).  a weight of 1 is plain A*; larger weights
+     * trust the heuristic more, finding a solution faster whose length is at
+     * most w times the shortest one.
+     * @param weight a value of at least 1.0.
+     */
+    public void setHeuristicWeight(double weight)
+    {
+        if (weight < 1.0)
+        {
+            throw new IllegalArgumentException("Heuristic weight must be at least 1.0, was " + weight);
+        }
+        heuristicWeight = weight;
+    }
+
+    public double getHeuristicWeight()
+    {
+        return heuristicWeight;
+    }
+
+    /**
+     * selects where the A* searches (types 3 and 4) keep their frontier and
+     * closed list.  off-heap, states are packed into longs and held with their
+     * depth and parent in direct buffers by {@code OffHeapAStar}, so heap use
+     * and garbage collection stay flat however large the search gets.
+     * @param offHeap true to use the off-heap lists, false for the {@code ArrayList}s.
+     */
+    public void setOffHeapStorage(boolean offHeap)
+    {
+        offHeapStorage = offHeap;
+    }
+
+    public boolean isOffHeapStorage()
+    {
+        return offHeapStorage;
+    }
+
+    /**
+     * called from a real-time search after each move it commits to.
+     * @param nanos how long choosing the move took.
+     */
+    public void updateWorstStepNanos(long nanos)
+    {
+        if (nanos > worstStepNanos)
+        {
+            worstStepNanos = nanos;
+        }
+    }
+
+    public long getWorstStepNanos()
+    {
+        return worstStepNanos;
+    }
+
+    /**
+     * replaces the exact closed list of Breadth Search (type 1) and Beam
+     * Search with a Bloom filter, which takes a few bits per state instead of
+     * a whole map entry.  a new state the filter wrongly reports as seen is
+     * pruned, so a solution may be missed or come out longer; the report
+     * gives the estimated number of such states.
+     * @param filter an empty filter sized for the search, or null for the exact closed list.
+     */
+    public void setDuplicateFilter(BloomFilter filter)
+    {
+        duplicateFilter = filter;
+    }
+
+    public BloomFilter getDuplicateFilter()
+    {
+        return duplicateFilter;
+    }
+
+    /**
+     * @return the estimated number of new states the duplicate filter pruned
+     * as if seen before; 0 without a filter.
+     */
+    public double getEstimatedWronglyPruned()
+    {
+        return (duplicateFilter == null) ? 0 : duplicateFilter.getExpectedFalsePositives();
+    }
+
+    /**
+     * @return the estimated share of the pruned duplicates that were really
+     * new states; 0 without a filter or before anything was pruned.
+     */
+    public double getWronglyPrunedFraction()
+    {
+        return (duplicatesPruned == 0) ? 0 : Math.min(1.0, getEstimatedWronglyPruned() / duplicatesPruned);
+    }
+
+    /**
+     * tells the report how long a shortest solution is, so the solution of a
+     * search that is not guaranteed to be optimal (Greedy, Weighted A*, Beam
+     * Search) can be rated against it.
+     * @param length number of game states on a shortest solution path, the
+     *               same unit as {@code getSolutionLength()}; 0 if unknown.
+     */
+    public void setKnownOptimalLength(int length)
+    {
+        knownOptimalLength = length;
+    }
+
+    public int getKnownOptimalLength()
+    {
+        return knownOptimalLength;
+    }
+
+    /**
+     * @return solution moves divided by the moves of a shortest solution, 1.0
+     * when optimal; 0 if there is no solution yet or the optimum is not known.
+     */
+    public double getSolutionQuality()
+    {
+        if (solutionLength == 0 || knownOptimalLength == 0)
+        {
+            return 0;
+        }
+        if (knownOptimalLength == 1)
+        {
+            return 1.0;
+        }
+        return (double) (solutionLength - 1) / (knownOptimalLength - 1);
+    }
+
+    /**
+     * helper method; builds the initial game state for a start and goal board.
+     * @param start the 9 numbers on the start board by position index, 0 for the blank.
+     * @param goal the 9 numbers on the goal board by position index, 0 for the blank.
+     * @return the initial Puzzle, which keeps its own reference to the goal.
+     */
+    public static Puzzle createPuzzle(int[] start, int[] goal)
+    {
+        PuzzleSquare[] gameState = new PuzzleSquare[start.length];
+        int tempBlankRef = 0;
+        //create the PuzzleSquare objects
+        for(int i = 0; i < start.length; i++)
+        {
+            gameState[i] = new PuzzleSquare(start[i], goal[i], i);
+            if (start[i] == 0)
+            {
+                tempBlankRef = i;
+            }
+        }
+        return new Puzzle(gameState, tempBlankRef);
+    }
+
+    /**
+     * helper method; checks whether the goal board can be reached from the
+     * start board at all, on a board of any size.  every move swaps the blank
+     * with a tile, which changes the parity of the permutation of the squares
+     * (blank included), and moves the blank one square, so the parity of the
+     * permutation taking the goal to the start has to match that of the
+     * blank's Manhattan distance between the two.  the permutation's parity
+     * comes from counting its cycles, in time linear in the board size.
+     * @param start the numbers on the start board by position index.
+     * @param goal the numbers on the goal board by position index.
+     * @param width number of squares per row.
+     * @return True if the parities match, False if the goal is unreachable.
+     */
+    public static boolean isSolvable(int[] start, int[] goal, int width)
+    {
+        int[] squareOf = new int[start.length];
+        for (int i = 0; i < goal.length; i++)
+        {
+            squareOf[goal[i]] = i;
+        }
+        boolean[] seen = new boolean[start.length];
+        int transpositions = 0;
+        for (int i = 0; i < start.length; i++)
+        {
+            //a cycle of length k is k - 1 transpositions.
+            int length = 0;
+            for (int j = i; !seen[j]; j = squareOf[start[j]])
+            {
+                seen[j] = true;
+                length++;
+            }
+            transpositions += Math.max(0, length - 1);
+        }
+        int goalBlank = squareOf[0];
+        int startBlank = 0;
+        while (start[startBlank] != 0)
+        {
+            startBlank++;
+        }
+        int blankDistance = Math.abs(startBlank / width - goalBlank / width)
+                + Math.abs(startBlank % width - goalBlank % width);
+        return transpositions % 2 == blankDistance % 2;
+    }
+
     /**
      * helper method; checks if a given Puzzle state matches the goalState.
      *
@@ -174,16 +575,13 @@ public class Utility {
 
     /**
      * helper method to gather performance statistics needed for report
-     * and format them nicely.
-     * NOTE: this function calls {@code Collections.reverse} on the 
-     * solution list, so there is need to be careful with the order of
-     * calling this function and possible manipulation the {@code solutionList}
-     * returned by the search methods.
+     * and format them nicely.  drawing every board of the solution is costly,
+     * so this is only called when the report is actually wanted; the numbers
+     * themselves are available from the getters at any time.
+     * @param solutionList the solution path in start-to-goal order; it is not modified.
      */
     public String createStatistics(ArrayList<Puzzle> solutionList)
     {
-        Collections.reverse(solutionList);
-
         StringBuilder text = new StringBuilder();
         int searchNameLength = searchName.length();
         StringBuilder nameBox = new StringBuilder();
@@ -199,6 +597,30 @@ public class Utility {
         String data = String.format("%17d | %22d | %24d | %17d | %14d \n", totalNodesExpanded, sizeOfClosedList,
                 maxSizeOfFrontierList, solutionLength, treeDepth );
         text.append(data);
+        text.append(String.format("  Duplicates Pruned: %d  |  Stale Entries Skipped: %d  |  Nodes Reopened: %d\n",
+                duplicatesPruned, staleEntriesSkipped, nodesReopened));
+        if (offHeapStorage)
+        {
+            text.append(String.format("  Off-Heap Memory: %,d bytes\n", offHeapBytes));
+        }
+        text.append(String.format("  Peak Memory (est.): %,d bytes\n", peakMemoryBytes));
+        if (worstStepNanos > 0)
+        {
+            text.append(String.format("  Worst Step Time: %,d microseconds\n", worstStepNanos / 1000));
+        }
+        if (duplicateFilter != null)
+        {
+            text.append(String.format("  Bloom Filter: %,d bytes, %d hashes, false positive rate %.2e"
+                    + "  |  Est. Wrongly Pruned: %.1f (%.3f%% of pruned)\n",
+                    duplicateFilter.getMemoryBytes(), duplicateFilter.getHashes(),
+                    duplicateFilter.getFalsePositiveRate(), getEstimatedWronglyPruned(),
+                    100 * getWronglyPrunedFraction()));
+        }
+        if (knownOptimalLength > 0)
+        {
+            text.append(String.format("  Solution Quality: %d moves against %d optimal (%.2fx)\n",
+                    solutionLength - 1, knownOptimalLength - 1, getSolutionQuality()));
+        }
         text.append("----------------------------------------------------------------------------------------------------------\n\n");
 
         ArrayList<String[]> movesSplitByLine = new ArrayList<>();
@@ -327,6 +749,31 @@ public class Utility {
         return min;
     }
 
+    /**
+     * helper method; finds from a list of possible puzzles the state most likely
+     * to lead to a solution via the weighted Manhattan heuristic for Weighted A*.
+     * @param openList the list created by a search class of currently unexpanded gameStates.
+     * @param weight the factor the Manhattan score is multiplied by.
+     * @return the puzzle that has the lowest search depth plus weighted Manhattan score
+     *          (defaults to the first entry if multiple puzzles have the same score.)
+     */
+    public static Puzzle getLowestWeightedManhattan(ArrayList<Puzzle> openList, double weight)
+    {
+        Puzzle min = openList.get(0);
+        double currentMin = min.getDepth() + weight * min.getPathCostManhattan();
+
+        for (Puzzle state : openList)
+        {
+            double cost = state.getDepth() + weight * state.getPathCostManhattan();
+            if (cost < currentMin)
+            {
+                currentMin = cost;
+                min = state;
+            }
+        }
+        return min;
+    }
+
     public static Puzzle getNextNode(ArrayList<Puzzle> openList)
     {
         Puzzle min = openList.get(0);
@@ -336,6 +783,96 @@ public class Utility {
         return min;
     }
 
+    public String getSearchName()
+    {
+        return searchName;
+    }
+
+    public int getSearchType()
+    {
+        return searchType;
+    }
+
+    public int getTotalNodesExpanded()
+    {
+        return totalNodesExpanded;
+    }
+
+    public int getSizeOfClosedList()
+    {
+        return sizeOfClosedList;
+    }
+
+    public int getMaxSizeOfClosedList()
+    {
+        return maxSizeOfClosedList;
+    }
+
+    public int getMaxSizeOfFrontierList()
+    {
+        return maxSizeOfFrontierList;
+    }
+
+    public int getSolutionLength()
+    {
+        return solutionLength;
+    }
+
+    public int getTreeDepth()
+    {
+        return treeDepth;
+    }
+
+    public int getDuplicatesPruned()
+    {
+        return duplicatesPruned;
+    }
+
+    public int getStaleEntriesSkipped()
+    {
+        return staleEntriesSkipped;
+    }
+
+    public int getNodesReopened()
+    {
+        return nodesReopened;
+    }
+
+    public long getOffHeapBytes()
+    {
+        return offHeapBytes;
+    }
+
+    /**
+     * @return the most memory the search's lists were estimated to hold at once.
+     */
+    public long getPeakMemoryBytes()
+    {
+        return peakMemoryBytes;
+    }
+
+    /**
+     * the performance stats as a flat JSON object, for the non-interactive
+     * modes that do not want the ASCII report.
+     */
+    public String toJson()
+    {
+        return "{\"search\":\"" + searchName + "\""
+                + ",\"nodesExpanded\":" + totalNodesExpanded
+                + ",\"closedListSize\":" + sizeOfClosedList
+                + ",\"maxFrontierListSize\":" + maxSizeOfFrontierList
+                + ",\"solutionLength\":" + solutionLength
+                + ",\"treeDepth\":" + treeDepth
+                + ",\"duplicatesPruned\":" + duplicatesPruned
+                + ",\"staleEntriesSkipped\":" + staleEntriesSkipped
+                + ",\"nodesReopened\":" + nodesReopened
+                + ",\"offHeapBytes\":" + offHeapBytes
+                + ",\"peakMemoryBytes\":" + peakMemoryBytes
+                + ",\"worstStepNanos\":" + worstStepNanos
+                + ",\"estimatedWronglyPruned\":" + Math.round(getEstimatedWronglyPruned() * 1000) / 1000.0
+                + ",\"knownOptimalLength\":" + knownOptimalLength + "}";
+    }
+
     /**
      * debugger method to see in-progress performance stats.
      */
@@ -346,6 +883,9 @@ public class Utility {
         System.out.println("maximum number of children on frontier list at any one time: " + maxSizeOfFrontierList);
         System.out.println("current depth of search tree: " + treeDepth);
         System.out.println("Solution length " + solutionLength);
+        System.out.println("duplicates pruned before reaching the frontier: " + duplicatesPruned);
+        System.out.println("stale frontier entries skipped: " + staleEntriesSkipped);
+        System.out.println("closed states reopened: " + nodesReopened);
     }
 
     /**
@@ -384,26 +924,122 @@ public class Utility {
         }
     }
 
+    /**
+     * helper method; creates the child game state reached by sliding the
+     * blank square of {@code gameState} in the given direction.
+     * @param gameState the state being expanded; it is left unchanged.
+     * @param move one of the blank square's allowable moves, as returned by
+     *             {@code PuzzleSquare.getMoves()}.
+     * @return a new Puzzle whose parent is {@code gameState}.
+     */
+    public static Puzzle createChild(Puzzle gameState, int move)
+    {
+        Puzzle tempChild = (Puzzle) gameState.clone();
+        int blankSquarePosition = gameState.getBlankSquare().getSquarePosition();
+
+        //determine adjacent tile
+        int moveToSquare = blankSquarePosition + move;
+        int moveToNumber = gameState.getInternalState()[moveToSquare].getCurrentNumber();
+
+        //switch Blank tile with adjacent tile.
+        tempChild.getInternalState()[moveToSquare].setCurrentNumber(0);
+        tempChild.setBlankSquare(moveToSquare);
+        tempChild.getInternalState()[blankSquarePosition].setCurrentNumber(moveToNumber);
+
+        //recalculations required by cloning and then shifting squares.
+        tempChild.recalculateHeuristics();
+        tempChild.createStateStrings();
+
+        //make sure we can reconstruct solution path from goal state.
+        tempChild.setParentState(gameState);
+        return tempChild;
+    }
+
+    /**
+     * helper method; follows the parent references of a goal state back to
+     * the initial state.
+     * @param goalState the goal state found by a search.
+     * @return the solution path, ordered from the initial state to the goal state.
+     */
+    public static ArrayList<Puzzle> buildSolutionPath(Puzzle goalState)
+    {
+        ArrayList<Puzzle> solutionList = new ArrayList<>();
+        Puzzle tempState = goalState;
+        while(tempState.getParentState() !=null)
+        {
+            solutionList.add(tempState);
+            tempState = tempState.getParentState();
+        }
+        //add the initial gameState.
+        solutionList.add(tempState);
+        Collections.reverse(solutionList);
+        return solutionList;
+    }
+
+    /**
+     * records the final statistics for a finished search.  the ASCII report
+     * is only rendered, printed and appended to the statistics file when
+     * {@code saveToDisk} asks for it; otherwise the numbers are left for the
+     * caller to read from the getters or {@code toJson}.
+     * @param solutionList the solution path as returned by {@code buildSolutionPath}.
+     * @param saveToDisk convenience flag that toggles the report on/off.
+     */
+    public void reportSolution(ArrayList<Puzzle> solutionList, boolean saveToDisk)
+    {
+        setSolutionLength(solutionList.size());
+        setTreeDepth(solutionList.get(solutionList.size() - 1).getDepth()); //make sure to set correct solution depth for final stats. (due to how breadth search is implemented.)
+        if (saveToDisk) {
+            String statisticsText = createStatistics(solutionList);
+            System.out.println(statisticsText);
+            saveToFile(statisticsText);
+        }
+    }
+
     /**
     * The core method to run the search methods.  The structure of the 
     * search is the same for all the methods, which the only difference
     * being which search cost function f(n) = g(n) + h(n) is used.
+    *
+    * Every state seen so far is indexed by its packed key along with the
+    * lowest depth (g) it has been reached at.  A child whose board is already
+    * known at a lower or equal depth is dominated and is never put on the
+    * frontier.  When a cheaper copy of a board is found, the older, more
+    * expensive copy stays on the frontier and is simply skipped when it is
+    * removed (lazy deletion).  Closed states are only expanded again when
+    * {@link #setReopenClosedNodes(boolean)} allows it.
     * @param initState the starting game state position.
     * @param statistics a helper object constructed in the calling class, which among other things contains a {@code int} flag that lets {@code runSearch} know which search method called it.
     * @param saveToDisk convenience flag that toggles saving to disk on/off.
+    * @return the solution path, or null if there is none or the calling thread was interrupted.
     */
     public static ArrayList<Puzzle> runSearch(Puzzle initState, Utility statistics, boolean saveToDisk)
     {
+        if (statistics.offHeapStorage && (statistics.searchType == 3 || statistics.searchType == 4))
+        {
+            return OffHeapAStar.runSearch(initState, statistics, saveToDisk);
+        }
+        if (statistics.duplicateFilter != null && statistics.searchType == 1)
+        {
+            return runFilteredBreadth(initState, statistics, saveToDisk);
+        }
+
         ArrayList<Puzzle> frontierList = new ArrayList<>();
-        ArrayList<Puzzle> closedList = new ArrayList<>();
         ArrayList<Puzzle> solutionList = new ArrayList<>();
+        HashMap<Long, Integer> bestDepth = new HashMap<>();     //lowest depth each board has been reached at.
+        HashMap<Long, Integer> closedDepth = new HashMap<>();   //depth each board had when it was expanded.
         Puzzle currentState = initState;
 
         frontierList.add(currentState);
+        bestDepth.put(currentState.getStateKey(), currentState.getDepth());
         Puzzle gameState = null;
 
-        while (frontierList != null)
+        while (!frontierList.isEmpty())
         {
+            if (Thread.currentThread().isInterrupted())
+            {
+                return null; //search was cancelled, e.g. by a PortfolioSearch that already has a winner.
+            }
+
             if (statistics.searchType == 1)
             {
                 //breadth
@@ -420,6 +1056,10 @@ public class Utility {
             {
                 //A* manhattan
                 gameState = getLowestAStarManhattan(frontierList);
+            } else if (statistics.searchType == 5)
+            {
+                //weighted A* manhattan
+                gameState = getLowestWeightedManhattan(frontierList, statistics.heuristicWeight);
             }else
             {
                 return null; //error occurred
@@ -427,79 +1067,105 @@ public class Utility {
 
             frontierList.remove(gameState);
 
-            if (isGoalState(gameState))
+            long stateKey = gameState.getStateKey();
+            if (gameState.getDepth() > bestDepth.get(stateKey))
             {
-                //create solution list and return
-                Puzzle tempState = gameState;
-                while(tempState.getParentState() !=null)
-                {
-                    solutionList.add(tempState);
-                    tempState = tempState.getParentState();
-                }
-                //add the initial gameState.
-                if (tempState.getParentState() == null)
-                {
-                    solutionList.add(tempState);
-                }
-
-                statistics.setSolutionLength(solutionList.size());
-                statistics.setTreeDepth(solutionList.get(0).getDepth()); //make sure to set correct solution depth for final stats. (due to how breadth search is implemented.)
-                String statisticsText = statistics.createStatistics(solutionList);
-                System.out.println(statisticsText);
-                if (saveToDisk) {
-                    statistics.saveToFile(statisticsText);
-                }
+                //a cheaper copy of this board was queued after this one; discard it.
+                statistics.staleEntriesSkipped += 1;
+                continue;
+            }
 
+            if (isGoalState(gameState))
+            {
+                solutionList = buildSolutionPath(gameState);
+                statistics.reportSolution(solutionList, saveToDisk);
                 return solutionList;
             }
-            if (isOnClosedList(gameState, closedList))
+
+            Integer closedAt = closedDepth.get(stateKey);
+            if (closedAt != null)
             {
-                //System.out.println("Found repeat state.");
+                if (!statistics.reopenClosedNodes || closedAt <= gameState.getDepth())
+                {
+                    //discard current state and start from top of loop again.
+                    continue;
+                }
+                statistics.nodesReopened += 1;
+            }
 
-                //discard current state and start from top of loop again.
-                continue;
-            } else
+            //iterate over blank square's available moves
+            for (int move: gameState.getBlankSquare().getMoves())
             {
-                //find blank square and its available moves;
-                PuzzleSquare blankSquare = gameState.getBlankSquare();
-                int[] moves = blankSquare.getMoves();
-                int blankSquarePosition = blankSquare.getSquarePosition();
+                Puzzle tempChild = createChild(gameState, move);
 
-                //iterate over blank square's available moves
-                for (int move: moves)
+                statistics.addToNodesExpanded();
+
+                long childKey = tempChild.getStateKey();
+                Integer knownDepth = bestDepth.get(childKey);
+                if ((knownDepth != null && knownDepth <= tempChild.getDepth())
+                        || (!statistics.reopenClosedNodes && closedDepth.containsKey(childKey)))
                 {
-                    Puzzle tempChild = (Puzzle) gameState.clone();
+                    //an equal or cheaper copy is already queued or closed.
+                    statistics.duplicatesPruned += 1;
+                    continue;
+                }
+                bestDepth.put(childKey, tempChild.getDepth());
 
-                    //determine adjacent tile
-                    int moveToSquare = blankSquarePosition + move;
-                    int moveToNumber = gameState.getInternalState()[moveToSquare].getCurrentNumber();
+                frontierList.add(tempChild);
 
-                    //switch Blank tile with adjacent tile.
-                    tempChild.getInternalState()[moveToSquare].setCurrentNumber(0);
-                    tempChild.setBlankSquare(moveToSquare);
-                    tempChild.getInternalState()[blankSquarePosition].setCurrentNumber(moveToNumber);
+                statistics.updateFrontierListLength(frontierList);
 
-                    //recalculations required by cloning and then shifting squares.
-                    tempChild.recalculateHeuristics();
-                    tempChild.createStateStrings();
+                statistics.setTreeDepth(tempChild.getDepth());
+            }
+            closedDepth.put(stateKey, gameState.getDepth());
+            statistics.updateClosedListLength(closedDepth.size());
+        }
 
-                    //make sure we can reconstruct solution path from goal state.
-                    tempChild.setParentState(gameState);
+        return null; //no solution found (i.e., error occurred if parity's correct.)
+    }
 
-                    frontierList.add(tempChild);
+    /**
+     * Breadth Search with the duplicate filter in place of the closed list.
+     * Breadth Search reaches every board first at its lowest depth, so a
+     * board only needs to be remembered as seen, not with its depth.
+     */
+    private static ArrayList<Puzzle> runFilteredBreadth(Puzzle initState, Utility statistics, boolean saveToDisk)
+    {
+        BloomFilter seen = statistics.duplicateFilter;
+        ArrayDeque<Puzzle> frontierList = new ArrayDeque<>();
+        frontierList.add(initState);
+        seen.add(initState.getStateKey());
 
-                    statistics.addToNodesExpanded();
-                    statistics.updateFrontierListLength(frontierList);
+        while (!frontierList.isEmpty())
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                return null;
+            }
+            Puzzle gameState = frontierList.poll();
+            if (isGoalState(gameState))
+            {
+                ArrayList<Puzzle> solutionList = buildSolutionPath(gameState);
+                statistics.reportSolution(solutionList, saveToDisk);
+                return solutionList;
+            }
 
-                    statistics.setTreeDepth(tempChild.getDepth());
-                
+            for (int move: gameState.getBlankSquare().getMoves())
+            {
+                Puzzle tempChild = createChild(gameState, move);
+                statistics.addToNodesExpanded();
+                if (!seen.add(tempChild.getStateKey()))
+                {
+                    statistics.duplicatesPruned += 1;
+                    continue;
                 }
-                closedList.add(gameState);
-                statistics.updateClosedListLength(closedList);
+                frontierList.add(tempChild);
+                statistics.updateFrontierListLength(frontierList.size());
+                statistics.setTreeDepth(tempChild.getDepth());
             }
+            statistics.updateClosedListLength((int) (seen.getStatesAdded() - frontierList.size()));
         }
-
-        return null; //no solution found (i.e., error occurred if parity's correct.)
+        return null; //every board the filter let through was searched; a wrongly pruned one may have led to the goal.
     }
 
 }
@@ -0,0 +1,51 @@
+import java.util.ArrayList;
+
+/**
+ *      Briana Collins brcollins@alaska.edu
+ *      Pamela Myers pamyers@alaska.edu
+ *
+ *  This class is currently a wrapper around the core {@code runSearch} method
+ *  in {@code Utility} to call Weighted A* searching with the Manhattan heuristic.
+ *  The solution found is at most {@code weight} times longer than the shortest one.
+ */
+public class WeightedAStar {
+
+    private Puzzle currentState;
+    private ArrayList<Puzzle> solutionList = new ArrayList<>();
+    private Utility statisticsGatherer;
+    private boolean saveToDisk = true;
+
+    /**
+     * Takes an initial gamestate and finds solution to goal by Weighted A*
+     * search with the Manhattan heuristic, f(n) = g(n) + weight * h(n).
+     * @param initState initial board state; Puzzle objects keep their own reference to goal state
+     * @param weight how strongly to favour the heuristic; 1.0 is plain A*.
+     * @param saveToDisk convenience flag to turn on/off saving search results to disk.
+     */
+    public WeightedAStar(Puzzle initState, double weight, boolean saveToDisk)
+    {
+        currentState = initState;
+        this.saveToDisk = saveToDisk;
+        statisticsGatherer = new Utility(5);
+        statisticsGatherer.setHeuristicWeight(weight);
+    }
+
+    /**
+    Runs the given search method and returns the solution path in
+    an ArrayList, in order of first move to last move.
+    */
+    public ArrayList<Puzzle> Search()
+    {
+        solutionList = Utility.runSearch(currentState, statisticsGatherer, saveToDisk);
+        return solutionList;
+    }
+
+    /**
+     * @return the performance stats of the last {@code Search()}; the ASCII
+     * report is only drawn when saving to disk.
+     */
+    public Utility getStatistics()
+    {
+        return statisticsGatherer;
+    }
+}